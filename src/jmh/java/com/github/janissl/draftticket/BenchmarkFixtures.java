@@ -0,0 +1,118 @@
+package com.github.janissl.draftticket;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.PassengerType;
+import com.github.janissl.draftticket.service.BasePriceBatcher;
+import com.github.janissl.draftticket.service.BasePriceCache;
+import com.github.janissl.draftticket.service.DraftPriceMemo;
+import com.github.janissl.draftticket.service.PriceService;
+import com.github.janissl.draftticket.service.PriceTable;
+import com.github.janissl.draftticket.service.TaxRateProvider;
+import com.github.janissl.draftticket.service.TicketService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Input data and upstream stubs shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+    public static final String[] DESTINATIONS = {"Vilnius", "Riga", "Tallinn", "Helsinki", "Warsaw", "Stockholm"};
+    public static final Double[] APPLICABLE_TAXES = {21.0, 5.0};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Creates a deterministic mix of adults and children with 1 to 3 items of luggage each going to
+     * a handful of destinations.
+     */
+    public static List<Passenger> createPassengers(int numberOfPassengers) {
+        List<Passenger> passengers = new ArrayList<>(numberOfPassengers);
+
+        for (int i = 0; i < numberOfPassengers; i++) {
+            PassengerType passengerType = i % 3 == 2 ? PassengerType.CHILD : PassengerType.ADULT;
+            passengers.add(new Passenger(passengerType, DESTINATIONS[i % DESTINATIONS.length], 1 + i % 3));
+        }
+
+        return passengers;
+    }
+
+    public static TicketService createTicketService(ExternalWebApiService externalWebApiService) {
+        return new TicketService(new BasePriceCache(externalWebApiService, new SimpleMeterRegistry(), 1000,
+                Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofSeconds(30), ForkJoinPool.commonPool()),
+                new BasePriceBatcher(externalWebApiService, Runnable::run, null, Duration.ZERO, 50), Duration.ofSeconds(5),
+                false);
+    }
+
+    public static PriceService createPriceService(ExternalWebApiService externalWebApiService) {
+        return new PriceService(createTicketService(externalWebApiService),
+                new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(new SimpleMeterRegistry(), DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                Runnable::run, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    /**
+     * An external Web API that answers immediately without any HTTP calls.
+     */
+    public static class StubExternalWebApiService extends ExternalWebApiService {
+        public StubExternalWebApiService() {
+            super(null, null, new SimpleMeterRegistry(), null, null, null, null, null, null);
+        }
+
+        @Override
+        public Double getBasePrice(String destination) {
+            return 10.0 + destination.length();
+        }
+
+        @Override
+        public Double getBasePrice(String destination, long deadlineNanos) {
+            return getBasePrice(destination);
+        }
+
+        @Override
+        public Double[] getApplicableTaxes() {
+            return APPLICABLE_TAXES.clone();
+        }
+    }
+
+    /**
+     * An external Web API that answers after a fixed latency, blocking the calling thread meanwhile.
+     */
+    public static class SlowStubExternalWebApiService extends ExternalWebApiService {
+        private final long latencyMillis;
+
+        public SlowStubExternalWebApiService(long latencyMillis) {
+            super(null, null, new SimpleMeterRegistry(), null, null, null, null, null, null);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Double getBasePrice(String destination) throws ExternalServiceUnavailableException {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExternalServiceUnavailableException("Interrupted while waiting for a base price.");
+            }
+
+            return 10.0 + destination.length();
+        }
+
+        @Override
+        public Double getBasePrice(String destination, long deadlineNanos) throws ExternalServiceUnavailableException {
+            return getBasePrice(destination);
+        }
+
+        @Override
+        public Double[] getApplicableTaxes() {
+            return APPLICABLE_TAXES.clone();
+        }
+    }
+}
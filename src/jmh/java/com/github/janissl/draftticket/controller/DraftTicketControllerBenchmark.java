@@ -0,0 +1,52 @@
+package com.github.janissl.draftticket.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Measures the whole request path from JSON request body to JSON response body through the Spring MVC stack,
+ * with the external Web API stubbed out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DraftTicketControllerBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    int numberOfPassengers;
+
+    MockMvc mockMvc;
+    byte[] passengerListJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        DraftTicketController controller = new DraftTicketController(
+                BenchmarkFixtures.createPriceService(new BenchmarkFixtures.StubExternalWebApiService()),
+                Duration.ofSeconds(5));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        passengerListJson = new ObjectMapper().writeValueAsBytes(BenchmarkFixtures.createPassengers(numberOfPassengers));
+    }
+
+    /**
+     * The draft price endpoint is asynchronous, so the response is written by a second, async dispatch.
+     */
+    @Benchmark
+    public MvcResult getDraftPrice() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get("/draftprice").contentType(MediaType.APPLICATION_JSON)
+                .content(passengerListJson)).andReturn();
+        return mockMvc.perform(asyncDispatch(asyncResult)).andReturn();
+    }
+}
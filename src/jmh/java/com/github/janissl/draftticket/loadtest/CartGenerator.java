@@ -0,0 +1,65 @@
+package com.github.janissl.draftticket.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates the JSON bodies of draft price requests with a realistic mix of carts.
+ * <p>
+ * The size of a cart is drawn from a weighted mix such as {@code 1:40,2:30,4:20,8:8,50:2}. All passengers of a cart
+ * travel to the same destination, which is drawn from {@code destinations} names whose popularity follows a Zipf
+ * distribution with the given exponent, so that a few destinations get most of the traffic. About a third of the
+ * passengers are children and everyone has 1 to 3 items of luggage.
+ */
+class CartGenerator {
+    private final int[] cartSizes;
+    private final double[] cumulativeCartSizeWeights;
+    private final double[] cumulativeDestinationWeights;
+
+    CartGenerator(String cartSizeMix, int destinations, double zipfExponent) {
+        String[] entries = cartSizeMix.split(",");
+        cartSizes = new int[entries.length];
+        cumulativeCartSizeWeights = new double[entries.length];
+
+        for (int i = 0; i < entries.length; i++) {
+            String[] sizeAndWeight = entries[i].trim().split(":");
+
+            if (sizeAndWeight.length != 2 || Integer.parseInt(sizeAndWeight[0]) < 1) {
+                throw new IllegalArgumentException(String.format("Malformed cart size mix %s", cartSizeMix));
+            }
+
+            cartSizes[i] = Integer.parseInt(sizeAndWeight[0]);
+            cumulativeCartSizeWeights[i] = (i == 0 ? 0.0 : cumulativeCartSizeWeights[i - 1])
+                    + Double.parseDouble(sizeAndWeight[1]);
+        }
+
+        cumulativeDestinationWeights = new double[destinations];
+
+        for (int rank = 1; rank <= destinations; rank++) {
+            cumulativeDestinationWeights[rank - 1] = (rank == 1 ? 0.0 : cumulativeDestinationWeights[rank - 2])
+                    + 1.0 / Math.pow(rank, zipfExponent);
+        }
+    }
+
+    String nextCart(Random random) {
+        int cartSize = cartSizes[draw(cumulativeCartSizeWeights, random)];
+        String destination = "Destination-" + draw(cumulativeDestinationWeights, random);
+        StringBuilder cart = new StringBuilder(64 * cartSize).append('[');
+
+        for (int i = 0; i < cartSize; i++) {
+            cart.append(i == 0 ? "" : ",")
+                    .append("{\"passengerType\":\"").append(random.nextInt(3) == 2 ? "CHILD" : "ADULT")
+                    .append("\",\"destination\":\"").append(destination)
+                    .append("\",\"itemsOfLuggage\":").append(1 + random.nextInt(3))
+                    .append('}');
+        }
+
+        return cart.append(']').toString();
+    }
+
+    private static int draw(double[] cumulativeWeights, Random random) {
+        double point = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, point);
+        return index >= 0 ? Math.min(index + 1, cumulativeWeights.length - 1) : -index - 1;
+    }
+}
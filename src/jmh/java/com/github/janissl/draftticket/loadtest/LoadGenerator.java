@@ -0,0 +1,135 @@
+package com.github.janissl.draftticket.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends draft price requests at a given rate, whether or not the earlier ones have been answered.
+ * <p>
+ * Requests arrive as a Poisson process and each latency is measured from the moment its request was due to be
+ * sent rather than from when it actually was, so a stalled service is not hidden by the generator slowing down
+ * with it. A request due while {@code maxInFlight} requests are still waiting for an answer is dropped and counted.
+ */
+class LoadGenerator implements AutoCloseable {
+    private static final long HIGHEST_TRACKABLE_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private static final class HttpGetWithBody extends HttpEntityEnclosingRequestBase {
+        HttpGetWithBody(URI uri, String body) {
+            setURI(uri);
+            setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+    }
+
+    private final URI uri;
+    private final CartGenerator cartGenerator;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService executor;
+    private final Recorder latencies = new Recorder(HIGHEST_TRACKABLE_LATENCY_MICROS, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    LoadGenerator(URI uri, CartGenerator cartGenerator, int maxInFlight) {
+        this.uri = uri;
+        this.cartGenerator = cartGenerator;
+        this.httpClient = HttpClients.custom()
+                .setMaxConnTotal(maxInFlight)
+                .setMaxConnPerRoute(maxInFlight)
+                .build();
+        this.executor = new ThreadPoolExecutor(0, maxInFlight, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+
+    /**
+     * Sends requests at {@code rate} per second for the duration and returns the latencies of those answered
+     * meanwhile, in microseconds. Requests still in flight at the end are recorded in the next run.
+     */
+    Histogram run(double rate, Duration duration, Random random) {
+        latencies.reset();
+        outcomes.clear();
+        dropped.reset();
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long due = start;
+
+        while (true) {
+            due += (long) (-Math.log(1.0 - random.nextDouble()) / rate * TimeUnit.SECONDS.toNanos(1));
+
+            if (due - end >= 0) {
+                break;
+            }
+
+            for (long delay = due - System.nanoTime(); delay > 0; delay = due - System.nanoTime()) {
+                LockSupport.parkNanos(delay);
+            }
+
+            send(cartGenerator.nextCart(random), due);
+        }
+
+        return latencies.getIntervalHistogram();
+    }
+
+    /**
+     * Returns the number of answers of the last run by their HTTP status, or by the exception thrown instead.
+     */
+    Map<String, LongAdder> getOutcomes() {
+        return outcomes;
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+    }
+
+    private void send(String cart, long due) {
+        try {
+            executor.execute(() -> {
+                String outcome;
+
+                try {
+                    HttpResponse response = httpClient.execute(new HttpGetWithBody(uri, cart));
+                    EntityUtils.consume(response.getEntity());
+                    outcome = String.valueOf(response.getStatusLine().getStatusCode());
+                } catch (IOException e) {
+                    outcome = e.getClass().getSimpleName();
+                }
+
+                latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due),
+                        HIGHEST_TRACKABLE_LATENCY_MICROS));
+                outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+}
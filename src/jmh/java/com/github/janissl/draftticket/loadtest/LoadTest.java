@@ -0,0 +1,146 @@
+package com.github.janissl.draftticket.loadtest;
+
+import com.github.janissl.draftticket.DraftTicketPriceServiceApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds how much load the service takes without the external services: starts the application against an
+ * {@link UpstreamStub} with the given latencies, error rates and stalls, drives {@code /draftprice} with an open-loop
+ * {@link LoadGenerator} and prints the throughput, the latency percentiles and the calls made to the stub.
+ * <p>
+ * Options of the load test start with {@code loadtest.}, every other argument is passed to the application, e.g.
+ * {@code ./gradlew loadTest --args='--loadtest.rate=2000 --loadtest.upstream.latency=50ms --upstream.executor.threads=64'}.
+ * The latency, latencyP99, errorRate, stallRate and stall of the stub can be set for all its endpoints under
+ * {@code loadtest.upstream.} or for a single one under {@code loadtest.upstream.taxes.},
+ * {@code loadtest.upstream.basePrice.} or {@code loadtest.upstream.basePrices.}.
+ */
+public final class LoadTest {
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new SimpleCommandLinePropertySource(args));
+        PropertyResolver options = new PropertySourcesPropertyResolver(sources);
+
+        double rate = options.getProperty("loadtest.rate", Double.class, 500.0);
+        Duration warmup = getDuration(options, "loadtest.warmup", "10s");
+        Duration duration = getDuration(options, "loadtest.duration", "30s");
+        Random random = new Random(options.getProperty("loadtest.seed", Long.class, 20210701L));
+
+        try (UpstreamStub upstream = new UpstreamStub(getBehaviour(options, "taxes"),
+                getBehaviour(options, "basePrice"), getBehaviour(options, "basePrices"),
+                options.getProperty("loadtest.upstream.bulkLookup", Boolean.class, true))) {
+            List<String> applicationArgs = new ArrayList<>(Arrays.asList("--server.port=0",
+                    "--taxes.url=" + upstream.url("/taxes"),
+                    "--basePrice.url=" + upstream.url("/baseprice"),
+                    "--basePrice.bulk.url=" + upstream.url("/baseprices")));
+            applicationArgs.addAll(Arrays.asList(args));
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(DraftTicketPriceServiceApplication.class)
+                    .run(applicationArgs.toArray(new String[0]));
+
+            try (LoadGenerator loadGenerator = new LoadGenerator(
+                    URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort()
+                            + "/draftprice"),
+                    new CartGenerator(options.getProperty("loadtest.cartSizes", "1:40,2:30,4:20,8:8,50:2"),
+                            options.getProperty("loadtest.destinations", Integer.class, 1000),
+                            options.getProperty("loadtest.zipfExponent", Double.class, 1.0)),
+                    options.getProperty("loadtest.maxInFlight", Integer.class, 1000))) {
+                loadGenerator.run(rate, warmup, random);
+                upstream.resetCounts();
+
+                Histogram latencies = loadGenerator.run(rate, duration, random);
+                report(System.out, rate, duration, latencies, loadGenerator, upstream);
+
+                String histogramPath = options.getProperty("loadtest.histogram");
+
+                if (null != histogramPath) {
+                    writeHistogram(Paths.get(histogramPath), latencies);
+                }
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static UpstreamStub.Behaviour getBehaviour(PropertyResolver options, String endpoint) {
+        String prefix = "loadtest.upstream." + endpoint + ".";
+        Duration latency = getDuration(options, prefix + "latency",
+                options.getProperty("loadtest.upstream.latency", "20ms"));
+
+        return new UpstreamStub.Behaviour(latency,
+                getDuration(options, prefix + "latencyP99",
+                        options.getProperty("loadtest.upstream.latencyP99", latency.toMillis() * 5 + "ms")),
+                options.getProperty(prefix + "errorRate", Double.class,
+                        options.getProperty("loadtest.upstream.errorRate", Double.class, 0.0)),
+                options.getProperty(prefix + "stallRate", Double.class,
+                        options.getProperty("loadtest.upstream.stallRate", Double.class, 0.0)),
+                getDuration(options, prefix + "stall", options.getProperty("loadtest.upstream.stall", "10s")));
+    }
+
+    private static Duration getDuration(PropertyResolver options, String key, String defaultValue) {
+        return DurationStyle.detectAndParse(options.getProperty(key, defaultValue));
+    }
+
+    private static void report(PrintStream out, double rate, Duration duration, Histogram latencies,
+                               LoadGenerator loadGenerator, UpstreamStub upstream) {
+        long answered = latencies.getTotalCount();
+        double seconds = duration.toNanos() / 1e9;
+
+        out.println();
+        out.printf("Target rate:      %.1f requests/s for %s%n", rate, duration);
+        out.printf("Throughput:       %.1f answers/s%n", answered / seconds);
+        out.printf("Answered:         %d by outcome %s%n", answered, sorted(loadGenerator.getOutcomes()));
+        out.printf("Dropped:          %d%n", loadGenerator.getDropped());
+        out.printf("Latency (ms):     p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, p99.99 %.2f, max %.2f%n",
+                millis(latencies, 50.0), millis(latencies, 90.0), millis(latencies, 99.0),
+                millis(latencies, 99.9), millis(latencies, 99.99), latencies.getMaxValue() / 1000.0);
+        out.printf("Upstream calls:   taxes %d, baseprice %d, baseprices %d (%.3f per answer)%n",
+                upstream.getTaxesCalls(), upstream.getBasePriceCalls(), upstream.getBasePricesCalls(),
+                answered == 0 ? 0.0 : (double) (upstream.getTaxesCalls() + upstream.getBasePriceCalls()
+                        + upstream.getBasePricesCalls()) / answered);
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static Map<String, Long> sorted(Map<String, LongAdder> outcomes) {
+        Map<String, Long> sorted = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> sorted.put(outcome, count.sum()));
+        return sorted;
+    }
+
+    private static void writeHistogram(Path path, Histogram latencies) throws IOException {
+        if (null != path.getParent()) {
+            Files.createDirectories(path.getParent());
+        }
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(path), false, "UTF-8")) {
+            latencies.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.janissl.draftticket.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embedded stand-in for the base price and taxes services, which delays, fails or stalls its answers as told.
+ * <p>
+ * It serves {@code /taxes}, {@code /baseprice/{destination}} and {@code /baseprices?destination=...} in the format of
+ * the real services. Base prices are derived from the name of the destination, so every destination exists and
+ * keeps its price. Each request is answered on a thread of its own, so slow answers do not hold up the others.
+ */
+class UpstreamStub implements AutoCloseable {
+    static final Double[] APPLICABLE_TAXES = {21.0, 5.0};
+
+    /**
+     * How an endpoint answers: after a log-normally distributed latency given by its median and 99th percentile,
+     * with a 503 at the error rate, and after a stall instead of the latency at the stall rate.
+     */
+    static final class Behaviour {
+        private static final double Z_99 = 2.3263;
+
+        final Duration medianLatency;
+        final Duration p99Latency;
+        final double errorRate;
+        final double stallRate;
+        final Duration stall;
+
+        Behaviour(Duration medianLatency, Duration p99Latency, double errorRate, double stallRate, Duration stall) {
+            if (p99Latency.compareTo(medianLatency) < 0) {
+                throw new IllegalArgumentException("The 99th percentile of the latency is below its median.");
+            }
+
+            this.medianLatency = medianLatency;
+            this.p99Latency = p99Latency;
+            this.errorRate = errorRate;
+            this.stallRate = stallRate;
+            this.stall = stall;
+        }
+
+        long nextDelayNanos(ThreadLocalRandom random) {
+            if (random.nextDouble() < stallRate) {
+                return stall.toNanos();
+            }
+
+            if (medianLatency.isZero() || medianLatency.equals(p99Latency)) {
+                return medianLatency.toNanos();
+            }
+
+            double sigma = Math.log((double) p99Latency.toNanos() / medianLatency.toNanos()) / Z_99;
+            return (long) (medianLatency.toNanos() * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        boolean nextFails(ThreadLocalRandom random) {
+            return random.nextDouble() < errorRate;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("median %s, p99 %s, error rate %s, stall rate %s, stall %s",
+                    medianLatency, p99Latency, errorRate, stallRate, stall);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final LongAdder taxesCalls = new LongAdder();
+    private final LongAdder basePriceCalls = new LongAdder();
+    private final LongAdder basePricesCalls = new LongAdder();
+
+    UpstreamStub(Behaviour taxes, Behaviour basePrice, Behaviour basePrices, boolean bulkLookupSupported)
+            throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(executor);
+
+        server.createContext("/taxes", exchange -> answer(exchange, taxesCalls, taxes, () -> {
+            StringBuilder body = new StringBuilder("[");
+
+            for (int i = 0; i < APPLICABLE_TAXES.length; i++) {
+                body.append(i == 0 ? "" : ",").append(APPLICABLE_TAXES[i]);
+            }
+
+            return body.append(']').toString();
+        }));
+        server.createContext("/baseprice/", exchange -> answer(exchange, basePriceCalls, basePrice,
+                () -> String.valueOf(getBasePrice(exchange.getRequestURI().getPath().substring("/baseprice/".length())))));
+        server.createContext("/baseprices", exchange -> {
+            if (!bulkLookupSupported) {
+                respond(exchange, 404, "");
+                return;
+            }
+
+            answer(exchange, basePricesCalls, basePrices, () -> {
+                StringBuilder body = new StringBuilder("{");
+
+                for (String destination: getDestinations(exchange.getRequestURI().getRawQuery())) {
+                    body.append(body.length() == 1 ? "" : ",")
+                            .append('"').append(destination).append("\":").append(getBasePrice(destination));
+                }
+
+                return body.append('}').toString();
+            });
+        });
+
+        server.start();
+    }
+
+    /**
+     * Returns a base price between 5.00 and 94.99 that only depends on the destination.
+     */
+    static double getBasePrice(String destination) {
+        return 5.0 + Math.floorMod(destination.hashCode(), 9000) / 100.0;
+    }
+
+    String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    long getTaxesCalls() {
+        return taxesCalls.sum();
+    }
+
+    long getBasePriceCalls() {
+        return basePriceCalls.sum();
+    }
+
+    long getBasePricesCalls() {
+        return basePricesCalls.sum();
+    }
+
+    void resetCounts() {
+        taxesCalls.reset();
+        basePriceCalls.reset();
+        basePricesCalls.reset();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Body {
+        String get() throws IOException;
+    }
+
+    private static void answer(HttpExchange exchange, LongAdder calls, Behaviour behaviour, Body body)
+            throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        calls.increment();
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(behaviour.nextDelayNanos(random));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+
+        if (behaviour.nextFails(random)) {
+            respond(exchange, 503, "");
+        } else {
+            respond(exchange, 200, body.get());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static List<String> getDestinations(String query) throws UnsupportedEncodingException {
+        List<String> destinations = new ArrayList<>();
+
+        if (null == query) {
+            return destinations;
+        }
+
+        for (String parameter: query.split("&")) {
+            if (parameter.startsWith("destination=")) {
+                destinations.add(URLDecoder.decode(parameter.substring("destination=".length()), "UTF-8"));
+            }
+        }
+
+        return destinations;
+    }
+}
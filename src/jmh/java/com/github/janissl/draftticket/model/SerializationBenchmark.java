@@ -0,0 +1,53 @@
+package com.github.janissl.draftticket.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    int numberOfPassengers;
+
+    ObjectReader passengerListReader;
+    ObjectWriter draftPriceWriter;
+    byte[] passengerListJson;
+    DraftPrice draftPrice;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        passengerListReader = objectMapper.readerFor(new TypeReference<List<Passenger>>() {});
+        draftPriceWriter = objectMapper.writerFor(DraftPrice.class);
+
+        List<Passenger> passengers = BenchmarkFixtures.createPassengers(numberOfPassengers);
+        passengerListJson = objectMapper.writeValueAsBytes(passengers);
+        draftPrice = BenchmarkFixtures.createPriceService(new BenchmarkFixtures.StubExternalWebApiService())
+                .getDraftPrice(passengers);
+    }
+
+    @Benchmark
+    public List<Passenger> readPassengerList() throws IOException {
+        return passengerListReader.readValue(passengerListJson);
+    }
+
+    @Benchmark
+    public byte[] writeDraftPrice() throws JsonProcessingException {
+        return draftPriceWriter.writeValueAsBytes(draftPrice);
+    }
+}
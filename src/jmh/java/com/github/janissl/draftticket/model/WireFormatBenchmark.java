@@ -0,0 +1,75 @@
+package com.github.janissl.draftticket.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading passenger lists and writing draft prices in JSON, Smile and CBOR. The payload sizes of each
+ * format are printed once per trial, as JMH does not report them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"1", "100", "1000"})
+    int numberOfPassengers;
+
+    ObjectReader passengerListReader;
+    ObjectWriter draftPriceWriter;
+    byte[] passengerList;
+    DraftPrice draftPrice;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper(createFactory(format));
+        passengerListReader = objectMapper.readerFor(new TypeReference<List<Passenger>>() {});
+        draftPriceWriter = objectMapper.writerFor(DraftPrice.class);
+
+        List<Passenger> passengers = BenchmarkFixtures.createPassengers(numberOfPassengers);
+        passengerList = objectMapper.writeValueAsBytes(passengers);
+        draftPrice = BenchmarkFixtures.createPriceService(new BenchmarkFixtures.StubExternalWebApiService())
+                .getDraftPrice(passengers);
+
+        System.out.printf("%n%s payload of %d passengers: request %d bytes, response %d bytes%n", format,
+                numberOfPassengers, passengerList.length, draftPriceWriter.writeValueAsBytes(draftPrice).length);
+    }
+
+    private static JsonFactory createFactory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public List<Passenger> readPassengerList() throws IOException {
+        return passengerListReader.readValue(passengerList);
+    }
+
+    @Benchmark
+    public byte[] writeDraftPrice() throws JsonProcessingException {
+        return draftPriceWriter.writeValueAsBytes(draftPrice);
+    }
+}
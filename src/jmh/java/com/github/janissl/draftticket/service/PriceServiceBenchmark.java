@@ -0,0 +1,61 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.DraftTicket;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.Ticket;
+import com.github.janissl.draftticket.model.TicketType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceServiceBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    int numberOfPassengers;
+
+    List<Double> applicableTaxes;
+    TaxRateSnapshot taxRateSnapshot;
+    List<Ticket> tickets;
+
+    @Setup
+    public void setUp() throws InvalidUserInputException {
+        applicableTaxes = Arrays.asList(BenchmarkFixtures.APPLICABLE_TAXES);
+        taxRateSnapshot = TaxRateSnapshot.of(applicableTaxes);
+        tickets = new ArrayList<>();
+
+        for (Passenger passenger: BenchmarkFixtures.createPassengers(numberOfPassengers)) {
+            double basePrice = 10.0 + passenger.getDestination().length();
+            tickets.add(new Ticket(TicketType.valueOf(passenger.getPassengerType().toString()), basePrice));
+            tickets.add(new Ticket(TicketType.LUGGAGE, basePrice, passenger.getItemsOfLuggage()));
+        }
+
+        PricingKernel.priceTickets(tickets, taxRateSnapshot);
+    }
+
+    @Benchmark
+    public BigDecimal totalPriceOfTicket() throws InvalidUserInputException {
+        Ticket ticket = tickets.get(tickets.size() - 1);
+        return PriceService.getTotalPriceOfTicket(PriceService.getTicketNetPrice(ticket), applicableTaxes);
+    }
+
+    @Benchmark
+    public BigDecimal totalPriceOfDraftTicket() {
+        return PriceService.getTotalPriceOfDraftTicket(tickets);
+    }
+
+    @Benchmark
+    public BigDecimal priceDraftTicket() throws InvalidUserInputException {
+        return new DraftTicket(tickets, taxRateSnapshot).getTotalPrice();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import com.github.janissl.draftticket.DraftTicketPriceServiceApplication;
+import com.github.janissl.draftticket.conf.VirtualThreads;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.PassengerType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput and latency percentiles of pricing draft tickets on platform and on virtual threads
+ * while every base price takes {@code upstreamLatencyMillis} to arrive.
+ * <p>
+ * Each benchmark thread is a client handing a request to the request executor, which stands in for the Tomcat
+ * thread pool (200 threads by default), and waiting for the answer. Every request goes to destinations that have
+ * not been priced before, so all of its base prices are fetched through the upstream executor. The
+ * {@code virtual} mode needs Java 21 or later, e.g. {@code ./gradlew jmh -PvirtualThreads}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(400)
+@Fork(1)
+public class ThreadingModelBenchmark {
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int UPSTREAM_THREADS = 32;
+    private static final int UPSTREAM_QUEUE_CAPACITY = 256;
+    private static final int DESTINATIONS_PER_REQUEST = 3;
+
+    @Param({"platform", "virtual"})
+    String threading;
+
+    @Param({"20"})
+    long upstreamLatencyMillis;
+
+    ExecutorService requestExecutor;
+    ExecutorService upstreamExecutor;
+    PriceService priceService;
+    AtomicLong requests = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        boolean virtualThreads = "virtual".equals(threading);
+
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("The virtual threading mode needs Java 21 or later; "
+                    + "run the benchmarks with -PvirtualThreads.");
+        }
+
+        requestExecutor = virtualThreads
+                ? VirtualThreads.newThreadPerTaskExecutor("request-")
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        upstreamExecutor = new DraftTicketPriceServiceApplication()
+                .getUpstreamExecutor(UPSTREAM_THREADS, UPSTREAM_QUEUE_CAPACITY, virtualThreads);
+
+        BenchmarkFixtures.SlowStubExternalWebApiService externalWebApiService =
+                new BenchmarkFixtures.SlowStubExternalWebApiService(upstreamLatencyMillis);
+        TicketService ticketService = new TicketService(new BasePriceCache(externalWebApiService,
+                new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(10), Duration.ofMinutes(5),
+                Duration.ofSeconds(30), upstreamExecutor), new BasePriceBatcher(externalWebApiService, upstreamExecutor,
+                null, Duration.ZERO, 50), Duration.ofSeconds(5));
+        priceService = new PriceService(ticketService,
+                new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(new SimpleMeterRegistry(), DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                upstreamExecutor, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        upstreamExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public DraftPrice draftPrice() throws ExecutionException, InterruptedException {
+        List<Passenger> passengers = new ArrayList<>(DESTINATIONS_PER_REQUEST);
+        long request = requests.incrementAndGet();
+
+        for (int i = 0; i < DESTINATIONS_PER_REQUEST; i++) {
+            passengers.add(new Passenger(PassengerType.ADULT, "Destination-" + request + "-" + i, 1));
+        }
+
+        return requestExecutor.submit(() -> priceService.getDraftPrice(passengers)).get();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.BenchmarkFixtures;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.DraftTicket;
+import com.github.janissl.draftticket.model.Passenger;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketServiceBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    int numberOfPassengers;
+
+    TicketService ticketService;
+    List<Passenger> passengers;
+    List<Double> applicableTaxes;
+
+    @Setup
+    public void setUp() {
+        ticketService = BenchmarkFixtures.createTicketService(new BenchmarkFixtures.StubExternalWebApiService());
+        passengers = BenchmarkFixtures.createPassengers(numberOfPassengers);
+        applicableTaxes = Arrays.asList(BenchmarkFixtures.APPLICABLE_TAXES);
+    }
+
+    @Benchmark
+    public DraftTicket createDraftTicket() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return ticketService.createDraftTicket(passengers, applicableTaxes);
+    }
+}
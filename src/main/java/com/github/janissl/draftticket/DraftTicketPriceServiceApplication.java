@@ -1,18 +1,43 @@
 package com.github.janissl.draftticket;
 
+import com.github.janissl.draftticket.conf.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication
+@EnableScheduling
 public class DraftTicketPriceServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(DraftTicketPriceServiceApplication.class, args);
     }
 
-    @Bean
-    public RestTemplate getRestTemplate() {
-        return new RestTemplate();
+    /**
+     * Runs the calls to the external services. With virtual threads every call gets a thread of its own and
+     * only the bulkheads of the circuit breakers limit how many of them run at once. A call that finds the queue
+     * full is rejected rather than run on the calling thread, which may be a request or scheduler thread, and
+     * is reported like one rejected by a bulkhead.
+     */
+    @Bean(name = "upstreamExecutor", destroyMethod = "shutdown")
+    public ExecutorService getUpstreamExecutor(@Value("${upstream.executor.threads:32}") int threads,
+                                               @Value("${upstream.executor.queueCapacity:256}") int queueCapacity,
+                                               @Value("${threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return VirtualThreads.newThreadPerTaskExecutor("upstream-");
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("upstream-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 }
@@ -0,0 +1,222 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker and concurrency bulkhead for the calls to one external service.
+ * <p>
+ * The outcomes of the last {@code slidingWindowSize} calls are kept. Once at least {@code minimumNumberOfCalls}
+ * have been recorded and either the failure rate or the rate of calls slower than {@code slowCallDuration}
+ * reaches its threshold (in percent), the breaker opens and rejects every call with
+ * {@link UpstreamRejectedException}. After {@code waitDurationInOpenState} it lets
+ * {@code permittedCallsInHalfOpenState} probe calls through: if all of them succeed in time the breaker closes,
+ * otherwise it opens again.
+ * <p>
+ * Independently of the state, no more than {@code maxConcurrentCalls} calls may be in flight at once; further
+ * calls are rejected immediately instead of queueing for a connection.
+ * <p>
+ * A call fails when it throws anything but {@link InvalidUserInputException}, which means the request could
+ * not even be built and says nothing about the health of the service.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String bulkheadFullMessage;
+    private final String openMessage;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final int minimumNumberOfCalls;
+    private final long waitDurationInOpenStateNanos;
+    private final int permittedCallsInHalfOpenState;
+    private final Semaphore bulkhead;
+    private final LongSupplier nanoTime;
+
+    private final byte[] outcomes;
+    private int nextOutcome;
+    private int recordedCalls;
+    private int failedCalls;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int halfOpenCalls;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold,
+                          Duration slowCallDuration, int slidingWindowSize, int minimumNumberOfCalls,
+                          Duration waitDurationInOpenState, int permittedCallsInHalfOpenState, int maxConcurrentCalls) {
+        this(name, failureRateThreshold, slowCallRateThreshold, slowCallDuration, slidingWindowSize,
+                minimumNumberOfCalls, waitDurationInOpenState, permittedCallsInHalfOpenState, maxConcurrentCalls,
+                System::nanoTime);
+    }
+
+    CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold,
+                   Duration slowCallDuration, int slidingWindowSize, int minimumNumberOfCalls,
+                   Duration waitDurationInOpenState, int permittedCallsInHalfOpenState, int maxConcurrentCalls,
+                   LongSupplier nanoTime) {
+        this.bulkheadFullMessage = String.format("Too many concurrent calls to the %s service.", name);
+        this.openMessage = String.format("Circuit breaker for the %s service is open.", name);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = slowCallDuration.toNanos();
+        this.outcomes = new byte[slidingWindowSize];
+        this.minimumNumberOfCalls = Math.min(minimumNumberOfCalls, slidingWindowSize);
+        this.waitDurationInOpenStateNanos = waitDurationInOpenState.toNanos();
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.nanoTime = nanoTime;
+    }
+
+    public <T> T execute(UpstreamFutures.UpstreamCall<T> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Permit permit = acquire();
+        boolean failed = true;
+
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } catch (InvalidUserInputException e) {
+            failed = false;
+            throw e;
+        } finally {
+            permit.complete(failed);
+        }
+    }
+
+    /**
+     * Admits a call that does not complete on the calling thread, e.g. a non-blocking one. The returned permit
+     * must be completed exactly once when the call has finished.
+     */
+    public Permit acquire() throws UpstreamRejectedException {
+        if (!bulkhead.tryAcquire()) {
+            throw new UpstreamRejectedException(bulkheadFullMessage);
+        }
+
+        try {
+            return new Permit(acquirePermission(), nanoTime.getAsLong());
+        } catch (UpstreamRejectedException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public int getAvailableConcurrentCalls() {
+        return bulkhead.availablePermits();
+    }
+
+    /**
+     * Returns the generation of the state the call is admitted in, so that calls completing after a state
+     * transition are not attributed to the new state.
+     */
+    private synchronized long acquirePermission() throws UpstreamRejectedException {
+        if (State.OPEN == state && nanoTime.getAsLong() - openedAt >= waitDurationInOpenStateNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (State.OPEN == state || (State.HALF_OPEN == state && halfOpenCalls >= permittedCallsInHalfOpenState)) {
+            throw new UpstreamRejectedException(openMessage);
+        }
+
+        if (State.HALF_OPEN == state) {
+            halfOpenCalls++;
+        }
+
+        return generation;
+    }
+
+    private synchronized void onCallComplete(long callGeneration, boolean failed, long durationNanos) {
+        if (callGeneration != generation) {
+            return;
+        }
+
+        boolean slow = durationNanos >= slowCallDurationNanos;
+
+        if (State.HALF_OPEN == state) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= permittedCallsInHalfOpenState) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (State.CLOSED == state) {
+            record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+
+            if (recordedCalls >= minimumNumberOfCalls
+                    && (failedCalls * 100.0 / recordedCalls >= failureRateThreshold
+                    || slowCalls * 100.0 / recordedCalls >= slowCallRateThreshold)) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    private void record(byte outcome) {
+        if (recordedCalls == outcomes.length) {
+            byte evicted = outcomes[nextOutcome];
+            failedCalls -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recordedCalls++;
+        }
+
+        outcomes[nextOutcome] = outcome;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        failedCalls += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        generation++;
+        halfOpenCalls = 0;
+        halfOpenSuccesses = 0;
+
+        if (State.OPEN == newState) {
+            openedAt = nanoTime.getAsLong();
+        } else if (State.CLOSED == newState) {
+            nextOutcome = 0;
+            recordedCalls = 0;
+            failedCalls = 0;
+            slowCalls = 0;
+        }
+    }
+
+    public class Permit {
+        private final long callGeneration;
+        private final long start;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(long callGeneration, long start) {
+            this.callGeneration = callGeneration;
+            this.start = start;
+        }
+
+        /**
+         * Records the outcome of the call and frees its place in the bulkhead. Only the first completion counts.
+         */
+        public void complete(boolean failed) {
+            if (completed.compareAndSet(false, true)) {
+                try {
+                    onCallComplete(callGeneration, failed, nanoTime.getAsLong() - start);
+                } finally {
+                    bulkhead.release();
+                }
+            }
+        }
+    }
+}
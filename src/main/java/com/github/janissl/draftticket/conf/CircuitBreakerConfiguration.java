@@ -0,0 +1,66 @@
+package com.github.janissl.draftticket.conf;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * One {@link CircuitBreaker} per external service, sharing the same settings.
+ */
+@Configuration
+public class CircuitBreakerConfiguration {
+    @Value("${upstream.circuitBreaker.failureRateThreshold:50}")
+    private double failureRateThreshold;
+
+    @Value("${upstream.circuitBreaker.slowCallRateThreshold:80}")
+    private double slowCallRateThreshold;
+
+    @Value("${upstream.circuitBreaker.slowCallDuration:2s}")
+    private Duration slowCallDuration;
+
+    @Value("${upstream.circuitBreaker.slidingWindowSize:50}")
+    private int slidingWindowSize;
+
+    @Value("${upstream.circuitBreaker.minimumNumberOfCalls:20}")
+    private int minimumNumberOfCalls;
+
+    @Value("${upstream.circuitBreaker.waitDurationInOpenState:10s}")
+    private Duration waitDurationInOpenState;
+
+    @Value("${upstream.circuitBreaker.permittedCallsInHalfOpenState:3}")
+    private int permittedCallsInHalfOpenState;
+
+    @Value("${upstream.bulkhead.maxConcurrentCalls:40}")
+    private int maxConcurrentCalls;
+
+    @Bean(name = "basePriceCircuitBreaker")
+    public CircuitBreaker getBasePriceCircuitBreaker(MeterRegistry meterRegistry) {
+        return createCircuitBreaker("basePrice", meterRegistry);
+    }
+
+    @Bean(name = "taxesCircuitBreaker")
+    public CircuitBreaker getTaxesCircuitBreaker(MeterRegistry meterRegistry) {
+        return createCircuitBreaker("taxes", meterRegistry);
+    }
+
+    private CircuitBreaker createCircuitBreaker(String upstream, MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(upstream, failureRateThreshold, slowCallRateThreshold,
+                slowCallDuration, slidingWindowSize, minimumNumberOfCalls, waitDurationInOpenState,
+                permittedCallsInHalfOpenState, maxConcurrentCalls);
+
+        Gauge.builder("upstream.circuitbreaker.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("State of the circuit breaker: 0 closed, 1 open, 2 half-open")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+        Gauge.builder("upstream.bulkhead.available", circuitBreaker, CircuitBreaker::getAvailableConcurrentCalls)
+                .description("Number of further concurrent calls the bulkhead admits")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+
+        return circuitBreaker;
+    }
+}
@@ -1,27 +1,84 @@
 package com.github.janissl.draftticket.conf;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.web.util.UriUtils;
+
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Base URL of an external service compiled into a template, to which extra path segments are appended.
+ * <p>
+ * The base URL is parsed once: empty path segments are dropped, as are a query and a fragment. Appending an extra
+ * path then drops its empty segments too and percent-encodes every other one. The resulting URIs are kept for up
+ * to {@code maximumSize} extra paths, e.g. one per destination.
+ */
 public class ExternalServiceUrlBuilder {
+    private final String prefix;
+    private final Cache<String, URI> uris;
+
+    public ExternalServiceUrlBuilder(String baseUrl, long maximumSize) throws MalformedURLException {
+        this.prefix = compile(baseUrl);
+        this.uris = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    private static String compile(String baseUrl) throws MalformedURLException {
+        URL url = new URL(baseUrl);
+        StringBuilder prefix = new StringBuilder(url.getProtocol()).append("://").append(url.getAuthority());
+
+        for (String segment: url.getPath().split("/")) {
+            if (!segment.isEmpty()) {
+                prefix.append('/').append(segment);
+            }
+        }
+
+        try {
+            return URI.create(prefix.toString()).toString();
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+    }
+
     public static String buildUrl(String baseUrl, String extraPath) throws MalformedURLException {
-        List<String> basePathSegments = new ArrayList<>(Arrays.asList(new URL(baseUrl).getPath().split("/")));
+        return new ExternalServiceUrlBuilder(baseUrl, 0L).expand(extraPath).toString();
+    }
+
+    /**
+     * Returns the URI of the base URL with the extra path appended, built only once per extra path.
+     */
+    public URI buildUri(String extraPath) {
+        if (null == extraPath) {
+            return expand(null);
+        }
+
+        return uris.get(extraPath, this::expand);
+    }
 
-        if (null != extraPath) {
-            List<String> extraPathSegments = new ArrayList<>(Arrays.asList(extraPath.split("/")));
-            basePathSegments.addAll(extraPathSegments);
+    URI expand(String extraPath) {
+        if (null == extraPath) {
+            return URI.create(prefix);
         }
 
-        List<String> normalizedSegments =
-                basePathSegments.stream()
-                        .filter(x -> !x.isEmpty())
-                        .collect(Collectors.toList());
+        StringBuilder uri = new StringBuilder(prefix.length() + extraPath.length() + 8).append(prefix);
+        int start = 0;
+
+        while (start <= extraPath.length()) {
+            int end = extraPath.indexOf('/', start);
+            end = -1 == end ? extraPath.length() : end;
+
+            if (end > start) {
+                uri.append('/').append(UriUtils.encodePathSegment(extraPath.substring(start, end),
+                        StandardCharsets.UTF_8));
+            }
+
+            start = end + 1;
+        }
 
-        String newPath = String.join("/", normalizedSegments);
-        return new URL(new URL(baseUrl.replaceAll("/+$", "")), newPath).toString();
+        return URI.create(uri.toString());
     }
 }
@@ -0,0 +1,26 @@
+package com.github.janissl.draftticket.conf;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.MalformedURLException;
+
+/**
+ * URL templates of the external services, compiled once at startup so that a malformed URL fails the startup
+ * rather than the first request.
+ */
+@Configuration
+public class ExternalServiceUrlConfiguration {
+
+    /**
+     * Base price URL of {@link ExternalWebApiService}, keeping the URIs of up to {@code basePrice.uris.maximumSize}
+     * destinations.
+     */
+    @Bean(name = "basePriceUrlBuilder")
+    public ExternalServiceUrlBuilder getBasePriceUrlBuilder(
+            @Value("${basePrice.url}") String basePriceUrl,
+            @Value("${basePrice.uris.maximumSize:10000}") long maximumSize) throws MalformedURLException {
+        return new ExternalServiceUrlBuilder(basePriceUrl, maximumSize);
+    }
+}
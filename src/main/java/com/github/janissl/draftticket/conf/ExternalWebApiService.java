@@ -2,50 +2,184 @@ package com.github.janissl.draftticket.conf;
 
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamStatusException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 
 @Service
 public class ExternalWebApiService {
+    /**
+     * Statuses with which the base price service tells that it does not support bulk lookups.
+     */
+    private static final List<Integer> BULK_LOOKUP_UNSUPPORTED_STATUSES = Arrays.asList(404, 405, 501);
+    private static final ParameterizedTypeReference<Map<String, Double>> BASE_PRICES_TYPE =
+            new ParameterizedTypeReference<Map<String, Double>>() {};
+
     @Value("${taxes.url}")
     private String taxesUrl;
 
-    @Value("${basePrice.url}")
-    private String basePriceUrl;
+    @Value("${basePrice.bulk.url:}")
+    private String basePricesUrl;
+
+    private volatile boolean bulkLookupSupported = true;
 
     private final RestTemplate restTemplate;
+    private final ExternalServiceUrlBuilder basePriceUrlBuilder;
+    private final SingleFlight<String, Double> basePriceFlights = new SingleFlight<>();
+    private final SingleFlight<String, Double[]> applicableTaxesFlights = new SingleFlight<>();
+    private final UpstreamTimer basePriceTimer;
+    private final UpstreamTimer applicableTaxesTimer;
+    private final CircuitBreaker basePriceCircuitBreaker;
+    private final CircuitBreaker applicableTaxesCircuitBreaker;
+    private final Hedger basePriceHedger;
+    private final Hedger basePricesHedger;
+    private final Retrier basePriceRetrier;
+    private final Retrier applicableTaxesRetrier;
 
     @Autowired
-    public ExternalWebApiService(RestTemplate restTemplate){
+    public ExternalWebApiService(RestTemplate restTemplate,
+                                 @Qualifier("basePriceUrlBuilder") ExternalServiceUrlBuilder basePriceUrlBuilder,
+                                 MeterRegistry meterRegistry,
+                                 @Qualifier("basePriceCircuitBreaker") CircuitBreaker basePriceCircuitBreaker,
+                                 @Qualifier("taxesCircuitBreaker") CircuitBreaker applicableTaxesCircuitBreaker,
+                                 @Qualifier("basePriceHedger") Hedger basePriceHedger,
+                                 @Qualifier("basePricesHedger") Hedger basePricesHedger,
+                                 @Qualifier("basePriceRetrier") Retrier basePriceRetrier,
+                                 @Qualifier("taxesRetrier") Retrier applicableTaxesRetrier){
         this.restTemplate = restTemplate;
+        this.basePriceUrlBuilder = basePriceUrlBuilder;
+        this.basePriceTimer = new UpstreamTimer(meterRegistry, "basePrice");
+        this.applicableTaxesTimer = new UpstreamTimer(meterRegistry, "taxes");
+        this.basePriceCircuitBreaker = basePriceCircuitBreaker;
+        this.applicableTaxesCircuitBreaker = applicableTaxesCircuitBreaker;
+        this.basePriceHedger = basePriceHedger;
+        this.basePricesHedger = basePricesHedger;
+        this.basePriceRetrier = basePriceRetrier;
+        this.applicableTaxesRetrier = applicableTaxesRetrier;
     }
 
+    /**
+     * Gets the base price of a destination. A call failing for a transient reason may be retried and a slow one
+     * hedged, each attempt going through the timer and the circuit breaker on its own.
+     */
     public Double getBasePrice(String destination) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return basePriceFlights.execute(destination, () -> basePriceRetrier.execute(() -> hedgeBasePrice(destination)));
+    }
+
+    /**
+     * Gets the base price of a destination like {@link #getBasePrice(String)}, but does not retry the call past
+     * {@code deadlineNanos}, in terms of {@link System#nanoTime()}, by which the caller stops waiting for it.
+     * Callers joining a call already in flight share the deadline of the caller that started it.
+     */
+    public Double getBasePrice(String destination, long deadlineNanos)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return basePriceFlights.execute(destination,
+                () -> basePriceRetrier.execute(() -> hedgeBasePrice(destination), deadlineNanos));
+    }
+
+    private Double hedgeBasePrice(String destination)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return basePriceHedger.execute(
+                () -> basePriceTimer.record(() -> basePriceCircuitBreaker.execute(() -> fetchBasePrice(destination))));
+    }
+
+    /**
+     * Whether {@link #getBasePrices(Collection, long)} may be used: a bulk lookup URL is configured and the base price
+     * service has not answered that it does not support bulk lookups.
+     */
+    public boolean isBulkLookupSupported() {
+        return bulkLookupSupported && null != basePricesUrl && !basePricesUrl.isEmpty();
+    }
+
+    /**
+     * Gets the base prices of several destinations with a single call. Destinations unknown to the base price
+     * service may be missing from the result. Returns an empty optional if bulk lookups are not supported.
+     * The call is not retried past {@code deadlineNanos}, in terms of {@link System#nanoTime()}.
+     */
+    public Optional<Map<String, Double>> getBasePrices(Collection<String> destinations, long deadlineNanos)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        if (!isBulkLookupSupported()) {
+            return Optional.empty();
+        }
+
+        return basePriceRetrier.execute(() -> basePricesHedger.execute(
+                () -> basePriceTimer.record(() -> basePriceCircuitBreaker.execute(() -> fetchBasePrices(destinations)))),
+                deadlineNanos);
+    }
+
+    public Double[] getApplicableTaxes() throws ExternalServiceUnavailableException {
         try {
-            String destinationURL = ExternalServiceUrlBuilder.buildUrl(basePriceUrl, destination);
-            return restTemplate.getForObject(destinationURL, Double.class);
+            return applicableTaxesFlights.execute(taxesUrl, () -> applicableTaxesRetrier.execute(
+                    () -> applicableTaxesTimer.record(() -> applicableTaxesCircuitBreaker.execute(this::fetchApplicableTaxes))));
+        } catch (InvalidUserInputException e) {
+            throw new IllegalStateException("Unexpected failure while getting applicable taxes", e);
+        }
+    }
+
+    private Double fetchBasePrice(String destination) throws ExternalServiceUnavailableException {
+        try {
+            return restTemplate.getForObject(basePriceUrlBuilder.buildUri(destination), Double.class);
         } catch (ResourceAccessException e) {
-            throw new ExternalServiceUnavailableException(String.format(
-                    "Failed to get a base price for the '%s' destination. Reason: %s", destination, e.getMessage()));
-        } catch (MalformedURLException e) {
+            throw new ExternalServiceUnavailableException(e,
+                    "Failed to get a base price for the '%s' destination. Reason: %s", destination, e.getMessage());
+        }
+    }
+
+    private Optional<Map<String, Double>> fetchBasePrices(Collection<String> destinations)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        URI basePricesURI;
+
+        try {
+            basePricesURI = UriComponentsBuilder.fromHttpUrl(basePricesUrl)
+                    .queryParam("destination", destinations.toArray())
+                    .encode()
+                    .build()
+                    .toUri();
+        } catch (IllegalArgumentException e) {
             throw new InvalidUserInputException(String.format(
-                    "A malformed URL has occurred using %s as a base URL and %s as a destination",
-                    basePriceUrl, destination));
+                    "A malformed URL has occurred using %s as a base URL and %s as destinations",
+                    basePricesUrl, destinations));
+        }
+
+        try {
+            Map<String, Double> basePrices =
+                    restTemplate.exchange(basePricesURI, HttpMethod.GET, null, BASE_PRICES_TYPE).getBody();
+            return Optional.of(null != basePrices ? basePrices : Collections.<String, Double>emptyMap());
+        } catch (ResourceAccessException e) {
+            if (e.getCause() instanceof UpstreamStatusException && BULK_LOOKUP_UNSUPPORTED_STATUSES.contains(
+                    ((UpstreamStatusException) e.getCause()).getStatusCode())) {
+                bulkLookupSupported = false;
+                return Optional.empty();
+            }
+
+            throw new ExternalServiceUnavailableException(e,
+                    "Failed to get base prices for the %s destinations. Reason: %s", destinations, e.getMessage());
         }
     }
 
-    public Double[] getApplicableTaxes() throws ExternalServiceUnavailableException {
-        try{
+    private Double[] fetchApplicableTaxes() throws ExternalServiceUnavailableException {
+        try {
             return restTemplate.getForObject(taxesUrl, Double[].class);
         } catch (ResourceAccessException e) {
-            throw new ExternalServiceUnavailableException(String.format(
-                    "Failed to get applicable taxes. Reason: %s", e.getMessage()));
+            throw new ExternalServiceUnavailableException(e,
+                    "Failed to get applicable taxes. Reason: %s", e.getMessage());
         }
     }
 }
@@ -0,0 +1,236 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedges the calls to one external service: if a call has not returned within the {@code delayPercentile}
+ * percentile of the latencies of the last {@code slidingWindowSize} successful calls, but at least
+ * {@code minDelay}, the same call is made once more and the first successful response is used.
+ * <p>
+ * Hedging starts once {@code minimumNumberOfCalls} calls have succeeded. Every call adds {@code budgetPercent}
+ * hundredths of a hedge to the budget, which holds no more than the hedges allowed for a whole window, and
+ * every hedge takes one from it; a call that is due to be hedged while the budget is exhausted just waits.
+ * Both attempts run on {@code executor} and the slower one is left to complete on its own. If the executor rejects
+ * the call it runs on the calling thread, and if it rejects the hedge the call is not hedged. With hedging
+ * disabled the call runs on the calling thread as if there was no hedger.
+ * <p>
+ * The {@code upstream.hedges} counter tells how many hedges were sent and whether they {@code won} or
+ * {@code lost}, or were {@code skipped} for want of budget or of a thread to run them.
+ */
+public class Hedger {
+    /**
+     * The budget is kept in ten-thousandths of a hedge, so that a budget given in percent adds up exactly.
+     */
+    private static final long HEDGE = 10_000L;
+
+    private final boolean enabled;
+    private final double delayPercentile;
+    private final long minDelayNanos;
+    private final long budgetPerCall;
+    private final long maxBudget;
+    private final int minimumNumberOfCalls;
+    private final Executor executor;
+
+    private final long[] latencies;
+    private final int recomputeInterval;
+    private int nextLatency;
+    private int recordedLatencies;
+    private int latenciesSinceRecompute;
+    private long budget;
+    private volatile long delayNanos = Long.MAX_VALUE;
+
+    private final LongAdder won = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public Hedger(String upstream, MeterRegistry meterRegistry, boolean enabled, double delayPercentile,
+                  Duration minDelay, double budgetPercent, int slidingWindowSize, int minimumNumberOfCalls,
+                  Executor executor) {
+        this.enabled = enabled;
+        this.delayPercentile = delayPercentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.budgetPerCall = Math.round(budgetPercent * HEDGE / 100.0);
+        this.maxBudget = Math.max(HEDGE, budgetPerCall * slidingWindowSize);
+        this.latencies = new long[slidingWindowSize];
+        this.recomputeInterval = Math.max(1, slidingWindowSize / 10);
+        this.minimumNumberOfCalls = Math.min(minimumNumberOfCalls, slidingWindowSize);
+        this.executor = executor;
+
+        register(meterRegistry, upstream, "won", won);
+        register(meterRegistry, upstream, "lost", lost);
+        register(meterRegistry, upstream, "skipped", skipped);
+        Gauge.builder("upstream.hedging.delay", this, hedger -> hedger.getDelayNanos() / 1e9)
+                .description("Time after which a call is hedged, in seconds")
+                .tag("upstream", upstream)
+                .register(meterRegistry);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String upstream, String result, LongAdder counter) {
+        FunctionCounter.builder("upstream.hedges", counter, LongAdder::sum)
+                .description("Hedged calls to external services")
+                .tag("upstream", upstream)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(UpstreamFutures.UpstreamCall<T> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        if (!enabled) {
+            return call.call();
+        }
+
+        long delay = delayNanos;
+        addBudget();
+        CompletableFuture<T> primary;
+
+        try {
+            primary = attempt(call);
+        } catch (RejectedExecutionException e) {
+            return timed(call);
+        }
+
+        try {
+            return primary.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!tryTakeBudget()) {
+                skipped.increment();
+                return await(primary);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalServiceUnavailableException("Interrupted while waiting for an external service.");
+        } catch (ExecutionException e) {
+            throw UpstreamFutures.rethrow(e.getCause());
+        }
+
+        CompletableFuture<T> hedge;
+
+        try {
+            hedge = attempt(call);
+        } catch (RejectedExecutionException e) {
+            returnBudget();
+            skipped.increment();
+            return await(primary);
+        }
+
+        CompletableFuture<T> firstSuccess = new CompletableFuture<>();
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+
+        primary.whenComplete((value, failure) -> complete(firstSuccess, value, failure, decided, failures, lost));
+        hedge.whenComplete((value, failure) ->
+                complete(firstSuccess, value, failure, decided, failures, null == failure ? won : lost));
+
+        return await(firstSuccess);
+    }
+
+    /**
+     * Returns the time after which a call is currently hedged, {@link Long#MAX_VALUE} while there are not enough
+     * successful calls to tell.
+     */
+    public long getDelayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Starts an attempt on the executor, throwing {@link RejectedExecutionException} if the executor has no thread
+     * to run it.
+     */
+    private <T> CompletableFuture<T> attempt(UpstreamFutures.UpstreamCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return timed(call);
+            } catch (ExternalServiceUnavailableException | InvalidUserInputException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private <T> T timed(UpstreamFutures.UpstreamCall<T> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long start = System.nanoTime();
+        T value = call.call();
+        recordLatency(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Completes the result with the first successful attempt, or with the failure of the last one if both failed,
+     * and counts the hedge as won or lost by the attempt that decides the result before the caller sees it.
+     */
+    private static <T> void complete(CompletableFuture<T> firstSuccess, T value, Throwable failure,
+                                     AtomicBoolean decided, AtomicInteger failures, LongAdder result) {
+        if ((null == failure || failures.incrementAndGet() == 2) && decided.compareAndSet(false, true)) {
+            result.increment();
+
+            if (null == failure) {
+                firstSuccess.complete(value);
+            } else {
+                firstSuccess.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalServiceUnavailableException("Interrupted while waiting for an external service.");
+        } catch (ExecutionException e) {
+            throw UpstreamFutures.rethrow(e.getCause());
+        }
+    }
+
+    private synchronized void addBudget() {
+        budget = Math.min(maxBudget, budget + budgetPerCall);
+    }
+
+    private synchronized void returnBudget() {
+        budget = Math.min(maxBudget, budget + HEDGE);
+    }
+
+    private synchronized boolean tryTakeBudget() {
+        if (budget < HEDGE) {
+            return false;
+        }
+
+        budget -= HEDGE;
+        return true;
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[nextLatency] = latencyNanos;
+        nextLatency = (nextLatency + 1) % latencies.length;
+        recordedLatencies = Math.min(recordedLatencies + 1, latencies.length);
+
+        if (recordedLatencies < minimumNumberOfCalls
+                || (Long.MAX_VALUE != delayNanos && ++latenciesSinceRecompute < recomputeInterval)) {
+            return;
+        }
+
+        latenciesSinceRecompute = 0;
+        long[] sorted = Arrays.copyOf(latencies, recordedLatencies);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(delayPercentile / 100.0 * sorted.length);
+        delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, rank - 1)]);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.janissl.draftticket.conf;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link Hedger} for the single and one for the bulk base price lookups, sharing the same settings.
+ * Hedging is off unless {@code upstream.hedging.enabled} is set.
+ */
+@Configuration
+public class HedgingConfiguration {
+    @Value("${upstream.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upstream.hedging.delayPercentile:95}")
+    private double delayPercentile;
+
+    @Value("${upstream.hedging.minDelay:10ms}")
+    private Duration minDelay;
+
+    @Value("${upstream.hedging.budgetPercent:5}")
+    private double budgetPercent;
+
+    @Value("${upstream.hedging.slidingWindowSize:200}")
+    private int slidingWindowSize;
+
+    @Value("${upstream.hedging.minimumNumberOfCalls:20}")
+    private int minimumNumberOfCalls;
+
+    /**
+     * Runs both attempts of a hedged call. Each attempt needs a place in the bulkhead of the base price service, so
+     * there are no more threads than the bulkhead has places; an attempt finding them all busy is rejected, which
+     * leaves the call unhedged.
+     */
+    @Bean(name = "hedgingExecutor", destroyMethod = "shutdown")
+    public ExecutorService getHedgingExecutor(@Value("${upstream.bulkhead.maxConcurrentCalls:40}") int maxConcurrentCalls,
+                                              @Value("${threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return VirtualThreads.newThreadPerTaskExecutor("hedging-");
+        }
+
+        return new ThreadPoolExecutor(0, maxConcurrentCalls, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new CustomizableThreadFactory("hedging-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(name = "basePriceHedger")
+    public Hedger getBasePriceHedger(MeterRegistry meterRegistry,
+                                     @Qualifier("hedgingExecutor") ExecutorService hedgingExecutor) {
+        return createHedger("basePrice", meterRegistry, hedgingExecutor);
+    }
+
+    @Bean(name = "basePricesHedger")
+    public Hedger getBasePricesHedger(MeterRegistry meterRegistry,
+                                      @Qualifier("hedgingExecutor") ExecutorService hedgingExecutor) {
+        return createHedger("basePrices", meterRegistry, hedgingExecutor);
+    }
+
+    private Hedger createHedger(String upstream, MeterRegistry meterRegistry, ExecutorService hedgingExecutor) {
+        return new Hedger(upstream, meterRegistry, enabled, delayPercentile, minDelay, budgetPercent,
+                slidingWindowSize, minimumNumberOfCalls, hedgingExecutor);
+    }
+}
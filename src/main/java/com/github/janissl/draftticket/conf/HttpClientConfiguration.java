@@ -0,0 +1,79 @@
+package com.github.janissl.draftticket.conf;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection-pooled, keep-alive HTTP client used by {@link ExternalWebApiService}.
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager getConnectionManager(
+            @Value("${upstream.http.maxConnections:200}") int maxConnections,
+            @Value("${upstream.http.maxConnectionsPerRoute:50}") int maxConnectionsPerRoute,
+            @Value("${upstream.http.connectionTimeToLive:5m}") Duration connectionTimeToLive,
+            @Value("${upstream.http.validateAfterInactivity:2s}") Duration validateAfterInactivity) {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(connectionTimeToLive.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity((int) validateAfterInactivity.toMillis());
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient getHttpClient(
+            PoolingHttpClientConnectionManager connectionManager,
+            @Value("${upstream.http.connectTimeout:1s}") Duration connectTimeout,
+            @Value("${upstream.http.readTimeout:3s}") Duration readTimeout,
+            @Value("${upstream.http.poolAcquireTimeout:500ms}") Duration poolAcquireTimeout,
+            @Value("${upstream.http.keepAlive:30s}") Duration keepAlive,
+            @Value("${upstream.http.idleEvictionTimeout:30s}") Duration idleEvictionTimeout) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolAcquireTimeout.toMillis())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictionTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate getRestTemplate(CloseableHttpClient httpClient,
+                                        RestTemplateResponseErrorHandler responseErrorHandler) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.setErrorHandler(responseErrorHandler);
+        return restTemplate;
+    }
+
+    /**
+     * Honours the Keep-Alive header of the upstream and falls back to the configured duration when the
+     * upstream does not send one, so that pooled connections are never kept open indefinitely.
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(Duration keepAlive) {
+        return (response, context) -> {
+            long keepAliveMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAliveMillis > 0 ? keepAliveMillis : keepAlive.toMillis();
+        };
+    }
+}
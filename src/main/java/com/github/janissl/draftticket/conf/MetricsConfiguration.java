@@ -0,0 +1,84 @@
+package com.github.janissl.draftticket.conf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.janissl.draftticket.model.AggregatedDraftPrice;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.service.PriceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics that are not recorded by the services themselves: the serialization stage of draft prices and
+ * the connection pool of the upstream HTTP client.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Replaces the JSON message converter of Spring Boot with one that times writing draft prices
+     * (single, aggregated or batch) as the {@code serialization} stage of {@link PriceService#STAGE_TIMER}.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter getMappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                      MeterRegistry meterRegistry) {
+        return new TimedMappingJackson2HttpMessageConverter(objectMapper,
+                PriceService.stageTimer(meterRegistry, "serialization"));
+    }
+
+    @Bean
+    public MeterBinder getConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "upstream");
+    }
+
+    /**
+     * Runs the write and records its time as the {@code serialization} stage if the object is a draft price
+     * or a batch of them.
+     */
+    static void writeTimed(Timer serializationTimer, Object object, Write write) throws IOException {
+        if (!(object instanceof DraftPrice || object instanceof AggregatedDraftPrice || object instanceof List)) {
+            write.run();
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            write.run();
+        } finally {
+            serializationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    interface Write {
+        void run() throws IOException;
+    }
+
+    private static class TimedMappingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+        private final Timer serializationTimer;
+
+        TimedMappingJackson2HttpMessageConverter(ObjectMapper objectMapper, Timer serializationTimer) {
+            super(objectMapper);
+            this.serializationTimer = serializationTimer;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            writeTimed(serializationTimer, object, () -> super.writeInternal(object, type, outputMessage));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link ExternalWebApiService} for the taxes in the reactive mode; base prices are
+ * looked up through {@link ExternalWebApiService} even then. Calls go through the same circuit breaker and are
+ * timed by the same upstream timer; failures are reported with the same exceptions and messages.
+ */
+@Service
+@ConditionalOnProperty(name = "pricing.reactive.enabled", havingValue = "true")
+public class ReactiveExternalWebApiService {
+    @Value("${taxes.url}")
+    private String taxesUrl;
+
+    private final WebClient webClient;
+    private final UpstreamTimer applicableTaxesTimer;
+    private final CircuitBreaker applicableTaxesCircuitBreaker;
+
+    @Autowired
+    public ReactiveExternalWebApiService(WebClient webClient, MeterRegistry meterRegistry,
+                                         @Qualifier("taxesCircuitBreaker") CircuitBreaker applicableTaxesCircuitBreaker) {
+        this.webClient = webClient;
+        this.applicableTaxesTimer = new UpstreamTimer(meterRegistry, "taxes");
+        this.applicableTaxesCircuitBreaker = applicableTaxesCircuitBreaker;
+    }
+
+    public Mono<Double[]> getApplicableTaxes() {
+        return Mono.defer(() -> get(URI.create(taxesUrl), Double[].class, applicableTaxesCircuitBreaker,
+                applicableTaxesTimer, e -> String.format("Failed to get applicable taxes. Reason: %s", e.getMessage())));
+    }
+
+    private <T> Mono<T> get(URI uri, Class<T> responseType, CircuitBreaker circuitBreaker, UpstreamTimer timer,
+                            Function<Throwable, String> failureMessage) {
+        long start = System.nanoTime();
+        CircuitBreaker.Permit permit;
+
+        try {
+            permit = circuitBreaker.acquire();
+        } catch (UpstreamRejectedException e) {
+            timer.record(System.nanoTime() - start, e);
+            return Mono.error(e);
+        }
+
+        return webClient.get()
+                .uri(uri)
+                .retrieve()
+                .onStatus(HttpStatus::is5xxServerError, response -> Mono.just(
+                        new ExternalServiceUnavailableException("Failed to get data from an external server")))
+                .onStatus(HttpStatus::is4xxClientError, response -> Mono.just(
+                        new ExternalServiceUnavailableException("Failed to get data from a client")))
+                .bodyToMono(responseType)
+                .switchIfEmpty(Mono.error(() -> new ExternalServiceUnavailableException(
+                        "Received an empty response from an external service.")))
+                .onErrorMap(e -> !(e instanceof ExternalServiceUnavailableException),
+                        e -> new ExternalServiceUnavailableException(failureMessage.apply(e)))
+                .doOnSuccess(value -> complete(permit, timer, start, null))
+                .doOnError(e -> complete(permit, timer, start, e))
+                .doOnCancel(() -> permit.complete(false));
+    }
+
+    private static void complete(CircuitBreaker.Permit permit, UpstreamTimer timer, long start, Throwable failure) {
+        permit.complete(null != failure);
+        timer.record(System.nanoTime() - start, failure);
+    }
+}
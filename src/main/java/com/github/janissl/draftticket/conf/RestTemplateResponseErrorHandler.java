@@ -1,6 +1,6 @@
 package com.github.janissl.draftticket.conf;
 
-import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.UpstreamStatusException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
@@ -20,9 +20,9 @@ public class RestTemplateResponseErrorHandler implements ResponseErrorHandler {
     @Override
     public void handleError(ClientHttpResponse response) throws IOException {
         if (response.getStatusCode().series() == HttpStatus.Series.SERVER_ERROR) {
-            throw new ExternalServiceUnavailableException("Failed to get data from an external server");
+            throw new UpstreamStatusException(response.getRawStatusCode(), "Failed to get data from an external server");
         } else if (response.getStatusCode().series() == HttpStatus.Series.CLIENT_ERROR) {
-            throw new ExternalServiceUnavailableException("Failed to get data from a client");
+            throw new UpstreamStatusException(response.getRawStatusCode(), "Failed to get data from a client");
         }
     }
 }
@@ -0,0 +1,146 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import com.github.janissl.draftticket.exception.UpstreamStatusException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retries the idempotent GET calls to one external service that failed for a transient reason.
+ * <p>
+ * A call is retried up to {@code maxAttempts} attempts in all, after a backoff that starts at
+ * {@code initialBackoff}, doubles with every retry up to {@code maxBackoff}, and of which a random part of up to
+ * a half is left out so that callers failing together do not retry together. A retry is only made if its
+ * backoff ends within {@code deadline} of the first attempt, which is how long the requests waiting for the call
+ * wait at most, and before the deadline of the caller if it has one, and if the shared {@link RetryBudget}
+ * allows it.
+ * <p>
+ * Transient failures are I/O errors such as refused connections, resets and read timeouts, and the 502, 503 and
+ * 504 statuses. A rejection by the circuit breaker or bulkhead, any other status, a timeout waiting for a pooled
+ * connection and an invalid request are not retried.
+ * <p>
+ * The {@code upstream.retries} counter tells how many retries were {@code sent} and how many transient failures
+ * were not retried because of the budget ({@code overBudget}) or the deadline ({@code pastDeadline}).
+ */
+public class Retrier {
+    private static final List<Integer> RETRYABLE_STATUSES = Arrays.asList(502, 503, 504);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long deadlineNanos;
+    private final RetryBudget retryBudget;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder pastDeadline = new LongAdder();
+
+    public Retrier(String upstream, MeterRegistry meterRegistry, int maxAttempts, Duration initialBackoff,
+                   Duration maxBackoff, Duration deadline, RetryBudget retryBudget) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.deadlineNanos = deadline.toNanos();
+        this.retryBudget = retryBudget;
+
+        register(meterRegistry, upstream, "sent", sent);
+        register(meterRegistry, upstream, "overBudget", overBudget);
+        register(meterRegistry, upstream, "pastDeadline", pastDeadline);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String upstream, String result, LongAdder counter) {
+        FunctionCounter.builder("upstream.retries", counter, LongAdder::sum)
+                .description("Retried calls to external services")
+                .tag("upstream", upstream)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(UpstreamFutures.UpstreamCall<T> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return execute(call, System.nanoTime() + deadlineNanos);
+    }
+
+    /**
+     * Executes the call, retrying it only as long as the backoff ends before {@code callerDeadlineNanos}, in terms
+     * of {@link System#nanoTime()}, as well as within {@code deadline} of the first attempt.
+     */
+    public <T> T execute(UpstreamFutures.UpstreamCall<T> call, long callerDeadlineNanos)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long start = System.nanoTime();
+        long cutoffNanos = callerDeadlineNanos - start < deadlineNanos ? callerDeadlineNanos : start + deadlineNanos;
+        retryBudget.deposit();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (ExternalServiceUnavailableException e) {
+                if (attempt >= maxAttempts || !isTransient(e)) {
+                    throw e;
+                }
+
+                long backoffNanos = getBackoffNanos(attempt);
+
+                if (System.nanoTime() + backoffNanos - cutoffNanos >= 0L) {
+                    pastDeadline.increment();
+                    throw e;
+                }
+
+                if (!retryBudget.tryWithdraw()) {
+                    overBudget.increment();
+                    throw e;
+                }
+
+                sleep(backoffNanos, e);
+                sent.increment();
+            }
+        }
+    }
+
+    /**
+     * Tells whether a failure is worth retrying: the service may well answer the same call a moment later.
+     */
+    static boolean isTransient(ExternalServiceUnavailableException failure) {
+        if (failure instanceof UpstreamRejectedException) {
+            return false;
+        }
+
+        for (Throwable cause = failure; null != cause; cause = cause.getCause()) {
+            if (cause instanceof UpstreamStatusException) {
+                return RETRYABLE_STATUSES.contains(((UpstreamStatusException) cause).getStatusCode());
+            } else if (cause instanceof ConnectionPoolTimeoutException) {
+                return false;
+            } else if (cause instanceof IOException && !(cause instanceof ExternalServiceUnavailableException)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private long getBackoffNanos(int attempt) {
+        long backoffNanos = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        return backoffNanos - ThreadLocalRandom.current().nextLong(backoffNanos / 2 + 1);
+    }
+
+    private static void sleep(long nanos, ExternalServiceUnavailableException failure)
+            throws ExternalServiceUnavailableException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.janissl.draftticket.conf;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token bucket shared by the retries of all calls to the external services, so that retries cannot multiply
+ * the load on a service that is already failing.
+ * <p>
+ * The bucket starts full with {@code maxTokens} tokens. Every call deposits {@code tokenRatio} of a token and
+ * every retry withdraws a whole one, so that in the long run no more than {@code tokenRatio} retries are made per
+ * call, while an idle service still gets up to {@code maxTokens} retries for a sudden blip.
+ */
+public class RetryBudget {
+    /**
+     * Tokens are kept in thousandths, so that a fractional ratio adds up exactly.
+     */
+    private static final long TOKEN = 1000L;
+
+    private final long maxTokens;
+    private final long deposit;
+    private long tokens;
+
+    public RetryBudget(MeterRegistry meterRegistry, int maxTokens, double tokenRatio) {
+        this.maxTokens = maxTokens * TOKEN;
+        this.deposit = Math.round(tokenRatio * TOKEN);
+        this.tokens = this.maxTokens;
+
+        Gauge.builder("upstream.retry.budget", this, RetryBudget::getTokens)
+                .description("Retries the retry budget still allows")
+                .register(meterRegistry);
+    }
+
+    public synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + deposit);
+    }
+
+    public synchronized boolean tryWithdraw() {
+        if (tokens < TOKEN) {
+            return false;
+        }
+
+        tokens -= TOKEN;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return (double) tokens / TOKEN;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.janissl.draftticket.conf;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * One {@link Retrier} per external service, sharing the same settings and a single {@link RetryBudget}.
+ * Retries end with {@code pricing.request.timeout} unless {@code upstream.retry.deadline} is set.
+ */
+@Configuration
+public class RetryConfiguration {
+    @Value("${upstream.retry.maxAttempts:3}")
+    private int maxAttempts;
+
+    @Value("${upstream.retry.initialBackoff:50ms}")
+    private Duration initialBackoff;
+
+    @Value("${upstream.retry.maxBackoff:1s}")
+    private Duration maxBackoff;
+
+    @Value("${upstream.retry.deadline:${pricing.request.timeout:5s}}")
+    private Duration deadline;
+
+    @Bean
+    public RetryBudget getRetryBudget(MeterRegistry meterRegistry,
+                                      @Value("${upstream.retry.budget.maxTokens:10}") int maxTokens,
+                                      @Value("${upstream.retry.budget.tokenRatio:0.1}") double tokenRatio) {
+        return new RetryBudget(meterRegistry, maxTokens, tokenRatio);
+    }
+
+    @Bean(name = "basePriceRetrier")
+    public Retrier getBasePriceRetrier(MeterRegistry meterRegistry, RetryBudget retryBudget) {
+        return createRetrier("basePrice", meterRegistry, retryBudget);
+    }
+
+    @Bean(name = "taxesRetrier")
+    public Retrier getTaxesRetrier(MeterRegistry meterRegistry, RetryBudget retryBudget) {
+        return createRetrier("taxes", meterRegistry, retryBudget);
+    }
+
+    private Retrier createRetrier(String upstream, MeterRegistry meterRegistry, RetryBudget retryBudget) {
+        return new Retrier(upstream, meterRegistry, maxAttempts, initialBackoff, maxBackoff, deadline, retryBudget);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent calls for the same key into a single call.
+ * <p>
+ * The first caller for a key runs the call, every caller arriving while it is in flight waits for it and
+ * receives the same result or exception. Nothing is kept once the call has completed.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public V execute(K key, UpstreamFutures.UpstreamCall<V> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existingFlight = inFlight.putIfAbsent(key, flight);
+
+        if (null != existingFlight) {
+            try {
+                return existingFlight.join();
+            } catch (CompletionException e) {
+                throw UpstreamFutures.rethrow(e);
+            }
+        }
+
+        try {
+            V value = call.call();
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers for running calls to external services asynchronously while keeping their checked exceptions.
+ */
+public final class UpstreamFutures {
+    private UpstreamFutures() {
+    }
+
+    @FunctionalInterface
+    public interface UpstreamCall<T> {
+        T call() throws ExternalServiceUnavailableException, InvalidUserInputException;
+    }
+
+    /**
+     * Runs the call on the executor. If the executor rejects it, the returned future fails with
+     * {@link UpstreamRejectedException}, as if a bulkhead had rejected the call.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(UpstreamCall<T> call, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.call();
+                } catch (ExternalServiceUnavailableException | InvalidUserInputException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(rejection());
+            return rejected;
+        }
+    }
+
+    /**
+     * Returns the failure of a call that the executor of the external service calls has rejected.
+     */
+    public static UpstreamRejectedException rejection() {
+        return new UpstreamRejectedException("Too many pending calls to external services.");
+    }
+
+    public static <T> T await(CompletableFuture<T> future, long deadlineNanos)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        try {
+            return future.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ExternalServiceUnavailableException("Timed out waiting for a response from an external service.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalServiceUnavailableException("Interrupted while waiting for an external service.");
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Rethrows the cause of a failed asynchronous call as the exception the synchronous call would have thrown.
+     * Declared to return an exception so that callers can write {@code throw rethrow(cause)}.
+     */
+    public static RuntimeException rethrow(Throwable cause)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        if (cause instanceof CompletionException && null != cause.getCause()) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof ExternalServiceUnavailableException) {
+            throw (ExternalServiceUnavailableException) cause;
+        } else if (cause instanceof InvalidUserInputException) {
+            throw (InvalidUserInputException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        throw new CompletionException(cause);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the calls to one external service as the {@code upstream.requests} timer, tagged by the outcome of the call:
+ * {@code success}, {@code unavailable} (the service could not be reached), {@code rejected} (the call was not
+ * made because of the circuit breaker or bulkhead), {@code invalid} (the request could not be built) or
+ * {@code error} (anything else).
+ */
+public class UpstreamTimer {
+    static final String METRIC_NAME = "upstream.requests";
+
+    private final Timer success;
+    private final Timer unavailable;
+    private final Timer rejected;
+    private final Timer invalid;
+    private final Timer error;
+
+    public UpstreamTimer(MeterRegistry meterRegistry, String upstream) {
+        this.success = register(meterRegistry, upstream, "success");
+        this.unavailable = register(meterRegistry, upstream, "unavailable");
+        this.rejected = register(meterRegistry, upstream, "rejected");
+        this.invalid = register(meterRegistry, upstream, "invalid");
+        this.error = register(meterRegistry, upstream, "error");
+    }
+
+    private static Timer register(MeterRegistry meterRegistry, String upstream, String outcome) {
+        return Timer.builder(METRIC_NAME)
+                .description("Calls to external services")
+                .tag("upstream", upstream)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public <T> T record(UpstreamFutures.UpstreamCall<T> call)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+
+        try {
+            return call.call();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            record(System.nanoTime() - start, failure);
+        }
+    }
+
+    /**
+     * Records a call that has already completed, with {@code null} as the failure of a successful call.
+     */
+    public void record(long durationNanos, Throwable failure) {
+        Timer timer;
+
+        if (null == failure) {
+            timer = success;
+        } else if (failure instanceof UpstreamRejectedException) {
+            timer = rejected;
+        } else if (failure instanceof ExternalServiceUnavailableException) {
+            timer = unavailable;
+        } else if (failure instanceof InvalidUserInputException) {
+            timer = invalid;
+        } else {
+            timer = error;
+        }
+
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.janissl.draftticket.conf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when running on Java 21 or later.
+ * <p>
+ * The application is compiled for Java 8, so the virtual thread API is looked up reflectively. Every method
+ * but {@link #isSupported()} throws {@link IllegalStateException} on older runtimes.
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return null != OF_VIRTUAL;
+    }
+
+    /**
+     * Returns a factory of virtual threads named {@code prefix} followed by a sequence number.
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        Object builder = invoke(OF_VIRTUAL, null);
+        return (ThreadFactory) invoke(FACTORY, invoke(NAME, builder, prefix, 0L));
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for every task. It does not limit concurrency.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, newThreadFactory(prefix));
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, but the application runs on Java "
+                    + System.getProperty("java.specification.version") + ".");
+        }
+
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to create virtual threads.", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create virtual threads.", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.janissl.draftticket.conf;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Handles every HTTP request on its own virtual thread instead of a thread of the Tomcat pool, so that
+ * a request waiting for the external services does not occupy a platform thread.
+ * <p>
+ * The number of requests in progress is then limited by {@code server.tomcat.max-connections} rather than
+ * {@code server.tomcat.threads.max}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+    @Bean(name = "requestExecutor", destroyMethod = "shutdown")
+    public ExecutorService getRequestExecutor() {
+        return VirtualThreads.newThreadPerTaskExecutor("request-");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> getVirtualThreadsProtocolHandlerCustomizer(
+            @Qualifier("requestExecutor") ExecutorService requestExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+}
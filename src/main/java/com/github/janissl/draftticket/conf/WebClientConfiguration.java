@@ -0,0 +1,51 @@
+package com.github.janissl.draftticket.conf;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking, connection-pooled HTTP client used by {@link ReactiveExternalWebApiService}. Only created in the
+ * reactive mode and configured with the same {@code upstream.http} settings as the blocking client.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pricing.reactive.enabled", havingValue = "true")
+public class WebClientConfiguration {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider getConnectionProvider(
+            @Value("${upstream.http.maxConnections:200}") int maxConnections,
+            @Value("${upstream.http.poolAcquireTimeout:500ms}") Duration poolAcquireTimeout,
+            @Value("${upstream.http.keepAlive:30s}") Duration keepAlive,
+            @Value("${upstream.http.connectionTimeToLive:5m}") Duration connectionTimeToLive,
+            @Value("${upstream.http.idleEvictionTimeout:30s}") Duration idleEvictionTimeout) {
+        return ConnectionProvider.builder("upstream")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(poolAcquireTimeout)
+                .maxIdleTime(keepAlive)
+                .maxLifeTime(connectionTimeToLive)
+                .evictInBackground(idleEvictionTimeout)
+                .build();
+    }
+
+    @Bean
+    public WebClient getWebClient(ConnectionProvider connectionProvider,
+                                  @Value("${upstream.http.connectTimeout:1s}") Duration connectTimeout,
+                                  @Value("${upstream.http.readTimeout:3s}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.janissl.draftticket.conf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.janissl.draftticket.service.PriceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Binary encodings of the draft price endpoints for service-to-service callers: CBOR ({@code application/cbor})
+ * and Smile ({@code application/x-jackson-smile}), selected by the {@code Content-Type} and {@code Accept} headers.
+ * JSON stays the default, as its converter comes first.
+ * <p>
+ * The converters replace the ones Spring MVC registers by default, so that they are configured like the JSON
+ * converter ({@code spring.jackson.*}) and time writing draft prices as the {@code serialization} stage too.
+ */
+@Configuration
+public class WireFormatConfiguration {
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter getCborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder objectMapperBuilder, MeterRegistry meterRegistry) {
+        return new TimedCborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build(),
+                PriceService.stageTimer(meterRegistry, "serialization"));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter getSmileHttpMessageConverter(
+            Jackson2ObjectMapperBuilder objectMapperBuilder, MeterRegistry meterRegistry) {
+        return new TimedSmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build(),
+                PriceService.stageTimer(meterRegistry, "serialization"));
+    }
+
+    private static class TimedCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+        private final Timer serializationTimer;
+
+        TimedCborHttpMessageConverter(ObjectMapper objectMapper, Timer serializationTimer) {
+            super(objectMapper);
+            this.serializationTimer = serializationTimer;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            MetricsConfiguration.writeTimed(serializationTimer, object,
+                    () -> super.writeInternal(object, type, outputMessage));
+        }
+    }
+
+    private static class TimedSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+        private final Timer serializationTimer;
+
+        TimedSmileHttpMessageConverter(ObjectMapper objectMapper, Timer serializationTimer) {
+            super(objectMapper);
+            this.serializationTimer = serializationTimer;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                throws IOException, HttpMessageNotWritableException {
+            MetricsConfiguration.writeTimed(serializationTimer, object,
+                    () -> super.writeInternal(object, type, outputMessage));
+        }
+    }
+}
@@ -2,58 +2,124 @@ package com.github.janissl.draftticket.controller;
 
 import com.github.janissl.draftticket.exception.DataUnavailableException;
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidPassengerDataException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.AggregatedDraftPrice;
 import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.DraftPriceResult;
 import com.github.janissl.draftticket.model.Passenger;
 import com.github.janissl.draftticket.service.PriceService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
+import static com.github.janissl.draftticket.conf.WireFormatConfiguration.APPLICATION_CBOR;
+import static com.github.janissl.draftticket.conf.WireFormatConfiguration.APPLICATION_SMILE;
+
+/**
+ * Draft price endpoints. Requests and responses are JSON by default, or CBOR or Smile as selected by the
+ * {@code Content-Type} and {@code Accept} headers.
+ */
 @RestController
 class DraftTicketController {
     private final PriceService priceService;
+    private final Duration requestTimeout;
 
     @Autowired
-    public DraftTicketController(PriceService priceService) {
+    public DraftTicketController(PriceService priceService,
+                                 @Value("${pricing.request.timeout:5s}") Duration requestTimeout) {
         this.priceService = priceService;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Prices the passengers asynchronously: the servlet thread is released while the external services are being
+     * called, and the response is written by the thread that completes the draft price. A draft price that is not
+     * ready within {@code pricing.request.timeout} is answered with an External Service Unavailable error.
+     */
+    @GetMapping(path="/draftprice", consumes={"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
+    public DeferredResult<DraftPrice> getDraftTicket(@RequestBody List<Passenger> passengerList)
+            throws InvalidUserInputException {
+        DeferredResult<DraftPrice> draftPrice = new DeferredResult<>(requestTimeout.toMillis(),
+                () -> new ExternalServiceUnavailableException("Timed out waiting for a response from an external service."));
+
+        priceService.getDraftPriceAsync(passengerList).whenComplete((result, e) -> {
+            if (null == e) {
+                draftPrice.setResult(result);
+            } else {
+                draftPrice.setErrorResult(e instanceof CompletionException && null != e.getCause() ? e.getCause() : e);
+            }
+        });
+
+        return draftPrice;
     }
 
-    @GetMapping(path="/draftprice", consumes="application/json")
-    public DraftPrice getDraftTicket(@RequestBody List<Passenger> passengerList)
+    /**
+     * Returns one line per ticket type and destination, with summed counts and prices, instead of two tickets
+     * per passenger. Selected with {@code ?aggregate=true}.
+     */
+    @GetMapping(path="/draftprice", consumes={"application/json", APPLICATION_CBOR, APPLICATION_SMILE}, params="aggregate=true")
+    public AggregatedDraftPrice getAggregatedDraftTicket(@RequestBody List<Passenger> passengerList)
             throws InvalidUserInputException, ExternalServiceUnavailableException {
-        return priceService.getDraftPrice(passengerList);
+        return priceService.getAggregatedDraftPrice(passengerList);
     }
 
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    @ExceptionHandler(DataUnavailableException.class)
-    public ResponseEntity<Map<String, String>> returnDataUnavailableErrorMessage(DataUnavailableException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("error", "Data Unavailable");
-        errorResponse.put("message", ex.getMessage());
-        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+    /**
+     * Prices many independent passenger lists at once. Every element of the response is either a draft price
+     * or an error body as returned by the single draft price endpoint, in the order of the request.
+     */
+    @GetMapping(path="/draftprice/batch", consumes={"application/json", APPLICATION_CBOR, APPLICATION_SMILE})
+    public List<Object> getDraftTicketBatch(@RequestBody List<List<Passenger>> passengerLists)
+            throws InvalidUserInputException, ExternalServiceUnavailableException {
+        List<Object> batch = new ArrayList<>();
+
+        for (DraftPriceResult result: priceService.getDraftPrices(passengerLists)) {
+            batch.add(result.isSuccess() ? result.getDraftPrice() : createErrorResponse(result.getFailure()));
+        }
+
+        return batch;
     }
 
-    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    @ExceptionHandler(ExternalServiceUnavailableException.class)
-    public ResponseEntity<Map<String, String>> returnExternalServiceUnavailableErrorMessage(ExternalServiceUnavailableException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("error", "External Service Unavailable");
+    /**
+     * Returns an error body with {@code error} and {@code message} fields, and for invalid passengers an
+     * {@code errors} list telling the index of each invalid passenger, the field at fault and an error code.
+     */
+    static Map<String, Object> createErrorResponse(Exception ex) {
+        if (ex instanceof DataUnavailableException) {
+            return createErrorResponse("Data Unavailable", ex);
+        } else if (ex instanceof ExternalServiceUnavailableException) {
+            return createErrorResponse("External Service Unavailable", ex);
+        }
+
+        return createErrorResponse("Invalid Input From Client", ex);
+    }
+
+    private static Map<String, Object> createErrorResponse(String error, Exception ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", error);
         errorResponse.put("message", ex.getMessage());
-        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+
+        if (ex instanceof InvalidPassengerDataException) {
+            errorResponse.put("errors", ((InvalidPassengerDataException) ex).getErrors());
+        }
+
+        return errorResponse;
     }
 
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
-    @ExceptionHandler(InvalidUserInputException.class)
-    public ResponseEntity<Map<String, String>> returnInvalidUserInputErrorMessage(InvalidUserInputException ex) {
-        Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("error", "Invalid Input From Client");
-        errorResponse.put("message", ex.getMessage());
-        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+    @ExceptionHandler({DataUnavailableException.class, ExternalServiceUnavailableException.class,
+            InvalidUserInputException.class})
+    public ResponseEntity<Map<String, Object>> returnErrorMessage(Exception ex) {
+        return new ResponseEntity<>(createErrorResponse(ex), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
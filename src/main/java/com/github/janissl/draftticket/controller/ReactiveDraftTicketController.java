@@ -0,0 +1,44 @@
+package com.github.janissl.draftticket.controller;
+
+import com.github.janissl.draftticket.exception.DataUnavailableException;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.service.ReactivePriceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draft price endpoint of the reactive mode. The servlet thread is released as soon as the request has been
+ * read; the response is written once all external services have answered.
+ */
+@RestController
+@ConditionalOnProperty(name = "pricing.reactive.enabled", havingValue = "true")
+class ReactiveDraftTicketController {
+    private final ReactivePriceService reactivePriceService;
+
+    @Autowired
+    public ReactiveDraftTicketController(ReactivePriceService reactivePriceService) {
+        this.reactivePriceService = reactivePriceService;
+    }
+
+    @GetMapping(path="/draftprice/reactive", consumes="application/json")
+    public Mono<DraftPrice> getDraftTicket(@RequestBody List<Passenger> passengerList) {
+        return reactivePriceService.getDraftPrice(passengerList);
+    }
+
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    @ExceptionHandler({DataUnavailableException.class, ExternalServiceUnavailableException.class,
+            InvalidUserInputException.class})
+    public ResponseEntity<Map<String, Object>> returnErrorMessage(Exception ex) {
+        return new ResponseEntity<>(DraftTicketController.createErrorResponse(ex), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.janissl.draftticket.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.janissl.draftticket.exception.DataUnavailableException;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.service.StreamingPriceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming draft price endpoint for very large passenger lists. Tickets are sent as newline-delimited JSON while
+ * they are priced; the last line holds the total price, or an error body if pricing has failed.
+ */
+@RestController
+class StreamingDraftTicketController {
+    private final StreamingPriceService streamingPriceService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public StreamingDraftTicketController(StreamingPriceService streamingPriceService, ObjectMapper objectMapper) {
+        this.streamingPriceService = streamingPriceService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping(path="/draftprice/stream", consumes={MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces=MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamDraftTicket(InputStream requestBody, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        try (JsonParser passengers = objectMapper.getFactory().createParser(requestBody);
+             JsonGenerator tickets = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            try {
+                streamingPriceService.streamDraftPrice(passengers, tickets);
+            } catch (DataUnavailableException | ExternalServiceUnavailableException | InvalidUserInputException e) {
+                if (!response.isCommitted()) {
+                    response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                }
+
+                tickets.writeObject(DraftTicketController.createErrorResponse(e));
+                tickets.writeRaw('\n');
+            }
+        }
+    }
+}
@@ -1,7 +1,41 @@
 package com.github.janissl.draftticket.exception;
 
+/**
+ * Thrown when the external services have no data for a request, e.g. for an unavailable destination. It is an
+ * expected failure, so no stack trace is captured.
+ */
 public class DataUnavailableException extends IllegalArgumentException {
+    private final Object[] messageArgs;
+    private String message;
+
     public DataUnavailableException(String msg) {
         super(msg);
+        this.messageArgs = null;
+    }
+
+    /**
+     * Formats the message with {@link String#format(String, Object...)} only when it is asked for.
+     */
+    public DataUnavailableException(String format, Object... args) {
+        super(format);
+        this.messageArgs = args;
+    }
+
+    @Override
+    public String getMessage() {
+        if (null == messageArgs) {
+            return super.getMessage();
+        }
+
+        if (null == message) {
+            message = String.format(super.getMessage(), messageArgs);
+        }
+
+        return message;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
     }
 }
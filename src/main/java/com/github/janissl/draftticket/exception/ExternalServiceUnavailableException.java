@@ -2,8 +2,47 @@ package com.github.janissl.draftticket.exception;
 
 import java.io.IOException;
 
+/**
+ * Thrown when an external service cannot be reached or does not answer as expected. It is an expected failure,
+ * so no stack trace is captured; an unexpected cause keeps its own.
+ */
 public class ExternalServiceUnavailableException extends IOException {
+    private final Object[] messageArgs;
+    private String message;
+
     public ExternalServiceUnavailableException(String msg) {
         super(msg);
+        this.messageArgs = null;
+    }
+
+    public ExternalServiceUnavailableException(String msg, Throwable cause) {
+        super(msg, cause);
+        this.messageArgs = null;
+    }
+
+    /**
+     * Formats the message with {@link String#format(String, Object...)} only when it is asked for.
+     */
+    public ExternalServiceUnavailableException(Throwable cause, String format, Object... args) {
+        super(format, cause);
+        this.messageArgs = args;
+    }
+
+    @Override
+    public String getMessage() {
+        if (null == messageArgs) {
+            return super.getMessage();
+        }
+
+        if (null == message) {
+            message = String.format(super.getMessage(), messageArgs);
+        }
+
+        return message;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
     }
 }
@@ -0,0 +1,85 @@
+package com.github.janissl.draftticket.exception;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when passengers received from the client fail validation. Holds every {@link ValidationError} found
+ * together with the index of the passenger at fault; the message joins the messages of all errors and is only
+ * built when it is asked for.
+ */
+public class InvalidPassengerDataException extends InvalidUserInputException {
+    private final int[] passengerIndexes;
+    private final int[] errors;
+    private final int size;
+    private String message;
+
+    /**
+     * @param passengerIndexes indexes of the invalid passengers, in ascending order
+     * @param errors           the errors of each invalid passenger, as a set of {@link ValidationError#mask()} bits
+     * @param size             number of invalid passengers
+     */
+    public InvalidPassengerDataException(int[] passengerIndexes, int[] errors, int size) {
+        super(null);
+        this.passengerIndexes = passengerIndexes;
+        this.errors = errors;
+        this.size = size;
+    }
+
+    public List<PassengerError> getErrors() {
+        List<PassengerError> passengerErrors = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            for (int remaining = errors[i]; 0 != remaining; remaining &= remaining - 1) {
+                passengerErrors.add(new PassengerError(passengerIndexes[i], ValidationError.lowestOf(remaining)));
+            }
+        }
+
+        return Collections.unmodifiableList(passengerErrors);
+    }
+
+    @Override
+    public String getMessage() {
+        if (null == message) {
+            StringBuilder joined = new StringBuilder();
+
+            for (PassengerError error: getErrors()) {
+                joined.append(joined.length() > 0 ? " " : "").append(error.getMessage());
+            }
+
+            message = joined.toString();
+        }
+
+        return message;
+    }
+
+    /**
+     * One error of one passenger, as reported to the client.
+     */
+    public static class PassengerError {
+        private final int passenger;
+        private final ValidationError code;
+
+        public PassengerError(int passenger, ValidationError code) {
+            this.passenger = passenger;
+            this.code = code;
+        }
+
+        public int getPassenger() {
+            return passenger;
+        }
+
+        public ValidationError getCode() {
+            return code;
+        }
+
+        public String getField() {
+            return code.getField();
+        }
+
+        public String getMessage() {
+            return code.getMessage();
+        }
+    }
+}
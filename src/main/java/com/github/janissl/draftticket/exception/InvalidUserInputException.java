@@ -2,8 +2,16 @@ package com.github.janissl.draftticket.exception;
 
 import java.io.IOException;
 
+/**
+ * Thrown when a request of the client is invalid. It is an expected failure, so no stack trace is captured.
+ */
 public class InvalidUserInputException extends IOException {
     public InvalidUserInputException(String msg) {
         super(msg);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
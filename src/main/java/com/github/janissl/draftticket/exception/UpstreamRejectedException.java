@@ -0,0 +1,10 @@
+package com.github.janissl.draftticket.exception;
+
+/**
+ * Thrown instead of calling an external service while its circuit breaker is open or its bulkhead is full.
+ */
+public class UpstreamRejectedException extends ExternalServiceUnavailableException {
+    public UpstreamRejectedException(String msg) {
+        super(msg);
+    }
+}
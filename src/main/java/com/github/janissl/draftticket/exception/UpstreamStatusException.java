@@ -0,0 +1,17 @@
+package com.github.janissl.draftticket.exception;
+
+/**
+ * Thrown when an external service answers with an HTTP error status.
+ */
+public class UpstreamStatusException extends ExternalServiceUnavailableException {
+    private final int statusCode;
+
+    public UpstreamStatusException(int statusCode, String msg) {
+        super(msg);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.janissl.draftticket.exception;
+
+/**
+ * Reasons a passenger received from the client is rejected, each with the field at fault and the message
+ * reported to the client.
+ */
+public enum ValidationError {
+    MISSING_PASSENGER_TYPE("passengerType", "No passenger type received from the client."),
+    MISSING_ITEMS_OF_LUGGAGE("itemsOfLuggage", "No number of luggage items received from the client."),
+    NEGATIVE_ITEMS_OF_LUGGAGE("itemsOfLuggage", "Number of luggage items cannot be negative."),
+    MISSING_DESTINATION("destination", "No destination received from the client."),
+    NO_ITEMS_OF_LUGGAGE("itemsOfLuggage", "Number of luggage items must be positive unless tickets are aggregated.");
+
+    private static final ValidationError[] VALUES = values();
+
+    private final String field;
+    private final String message;
+
+    ValidationError(String field, String message) {
+        this.field = field;
+        this.message = message;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Bit of this error in a set of errors kept as an {@code int}.
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    static ValidationError lowestOf(int errors) {
+        return VALUES[Integer.numberOfTrailingZeros(errors)];
+    }
+}
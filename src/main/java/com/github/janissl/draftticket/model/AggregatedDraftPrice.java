@@ -0,0 +1,41 @@
+package com.github.janissl.draftticket.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A draft price with identical tickets collapsed into {@link TicketLine}s. Its total price is the same as that
+ * of the {@link DraftPrice} of the same passengers.
+ */
+public class AggregatedDraftPrice {
+    private final List<TicketLine> tickets;
+    private final BigDecimal totalPrice;
+    private boolean stale;
+
+    public AggregatedDraftPrice(List<TicketLine> tickets, BigDecimal totalPrice) {
+        this.tickets = tickets;
+        this.totalPrice = totalPrice;
+    }
+
+    public List<TicketLine> getTickets() {
+        return tickets;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * See {@link DraftPrice#isStale()}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isStale() {
+        return stale;
+    }
+}
@@ -1,11 +1,14 @@
 package com.github.janissl.draftticket.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.math.BigDecimal;
 import java.util.List;
 
 public class DraftPrice {
     private final DraftTicket draftTicket;
     private BigDecimal totalPrice;
+    private boolean stale;
 
     public DraftPrice(DraftTicket draftTicket) {
         this.draftTicket = draftTicket;
@@ -23,4 +26,17 @@ public class DraftPrice {
         return totalPrice;
     }
 
+    public void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * Tells whether the price is based on last known base prices or taxes because an external service
+     * is currently not being called. Only included in the response when set.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isStale() {
+        return stale;
+    }
+
 }
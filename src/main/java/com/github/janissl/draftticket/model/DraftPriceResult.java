@@ -0,0 +1,34 @@
+package com.github.janissl.draftticket.model;
+
+/**
+ * Outcome of pricing one draft ticket of a batch: either its {@link DraftPrice} or the reason it failed.
+ */
+public class DraftPriceResult {
+    private final DraftPrice draftPrice;
+    private final Exception failure;
+
+    private DraftPriceResult(DraftPrice draftPrice, Exception failure) {
+        this.draftPrice = draftPrice;
+        this.failure = failure;
+    }
+
+    public static DraftPriceResult success(DraftPrice draftPrice) {
+        return new DraftPriceResult(draftPrice, null);
+    }
+
+    public static DraftPriceResult failure(Exception failure) {
+        return new DraftPriceResult(null, failure);
+    }
+
+    public boolean isSuccess() {
+        return null == failure;
+    }
+
+    public DraftPrice getDraftPrice() {
+        return draftPrice;
+    }
+
+    public Exception getFailure() {
+        return failure;
+    }
+}
@@ -1,23 +1,38 @@
 package com.github.janissl.draftticket.model;
 
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
-import com.github.janissl.draftticket.service.PriceService;
+import com.github.janissl.draftticket.service.PricingKernel;
+import com.github.janissl.draftticket.service.TaxRateSnapshot;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 public class DraftTicket {
     private final List<Ticket> tickets;
+    private final long totalPriceInMinorUnits;
 
     public DraftTicket(List<Ticket> ticketList, List<Double> applicableTaxes) throws InvalidUserInputException {
-        for (Ticket ticket: ticketList) {
-            Double netPrice = PriceService.getTicketNetPrice(ticket);
-            ticket.setPrice(PriceService.getTotalPriceOfTicket(netPrice, applicableTaxes));
-        }
+        this(ticketList, TaxRateSnapshot.of(applicableTaxes));
+    }
 
+    public DraftTicket(List<Ticket> ticketList, TaxRateSnapshot applicableTaxes) throws InvalidUserInputException {
+        this.totalPriceInMinorUnits = PricingKernel.priceTickets(ticketList, applicableTaxes);
         this.tickets = ticketList;
     }
 
+    /**
+     * Creates a draft ticket of tickets that have already been priced.
+     */
+    public DraftTicket(List<Ticket> pricedTickets, long totalPriceInMinorUnits) {
+        this.totalPriceInMinorUnits = totalPriceInMinorUnits;
+        this.tickets = pricedTickets;
+    }
+
     public List<Ticket> getTickets() {
         return tickets;
     }
+
+    public BigDecimal getTotalPrice() {
+        return tickets.isEmpty() ? BigDecimal.ZERO : BigDecimal.valueOf(totalPriceInMinorUnits, 2);
+    }
 }
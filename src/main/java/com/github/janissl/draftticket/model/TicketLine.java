@@ -0,0 +1,61 @@
+package com.github.janissl.draftticket.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Identical tickets of a draft ticket collapsed into a single line: all tickets of one type to one destination.
+ * The {@code price} of the line is the sum of the prices of the tickets it stands for.
+ */
+public class TicketLine {
+    private final TicketType ticketType;
+    private final String destination;
+    private final int count;
+    private final BigDecimal unitPrice;
+    private final BigDecimal price;
+
+    public TicketLine(TicketType ticketType, String destination, int count, BigDecimal unitPrice, BigDecimal price) {
+        this.ticketType = ticketType;
+        this.destination = destination;
+        this.count = count;
+        this.unitPrice = unitPrice;
+        this.price = price;
+    }
+
+    public TicketType getTicketType() {
+        return ticketType;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TicketLine ticketLine = (TicketLine) o;
+        return ticketType == ticketLine.ticketType &&
+                count == ticketLine.count &&
+                Objects.equals(destination, ticketLine.destination) &&
+                Objects.equals(unitPrice, ticketLine.unitPrice) &&
+                Objects.equals(price, ticketLine.price);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ticketType, destination, count, unitPrice, price);
+    }
+}
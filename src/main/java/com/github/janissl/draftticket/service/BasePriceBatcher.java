@@ -0,0 +1,206 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fetches base prices in batches.
+ * <p>
+ * Destinations requested within {@code basePrice.batch.window} of the first one, by any number of requests,
+ * are fetched with a single bulk call to the base price service; a batch reaching {@code basePrice.batch.maxSize}
+ * destinations is fetched right away. If the base price service does not support bulk lookups, destinations are
+ * fetched with one call each, in parallel, without waiting for a window. A destination missing from a bulk
+ * response gets the negative base price the base price service answers a single call for an unavailable
+ * destination with, so that both ways of fetching it fail and are cached alike. Calls are not retried past the
+ * latest deadline of the requests waiting for them.
+ */
+@Component
+public class BasePriceBatcher {
+    /**
+     * Base price of a destination that is not available.
+     */
+    static final Double UNAVAILABLE = -1.0;
+
+    private final ExternalWebApiService externalWebApiService;
+    private final Executor upstreamExecutor;
+    private final TaskScheduler taskScheduler;
+    private final Duration window;
+    private final int maxSize;
+
+    private Batch pendingBatch;
+
+    /**
+     * @param taskScheduler closes batches once their window has passed; not used if the window is zero
+     */
+    public BasePriceBatcher(ExternalWebApiService externalWebApiService,
+                            @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                            TaskScheduler taskScheduler,
+                            @Value("${basePrice.batch.window:2ms}") Duration window,
+                            @Value("${basePrice.batch.maxSize:50}") int maxSize) {
+        this.externalWebApiService = externalWebApiService;
+        this.upstreamExecutor = upstreamExecutor;
+        this.taskScheduler = taskScheduler;
+        this.window = window;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Adds the destinations to the pending batch and returns their base prices as they arrive. If the base price
+     * service does not support bulk lookups, the destinations are fetched one by one right away instead.
+     *
+     * @param deadlineNanos when the caller stops waiting for the base prices, in terms of {@link System#nanoTime()}
+     */
+    public Map<String, CompletableFuture<Double>> load(Collection<String> destinations, long deadlineNanos) {
+        if (!externalWebApiService.isBulkLookupSupported()) {
+            Batch basePrices = new Batch(deadlineNanos);
+
+            for (String destination: destinations) {
+                basePrices.put(destination, new CompletableFuture<>());
+            }
+
+            fetchOneByOne(basePrices);
+            return basePrices;
+        }
+
+        Map<String, CompletableFuture<Double>> basePrices = new LinkedHashMap<>();
+        List<Batch> fullBatches = new ArrayList<>();
+        Batch openedBatch = null;
+
+        synchronized (this) {
+            for (String destination: destinations) {
+                if (null == pendingBatch) {
+                    pendingBatch = new Batch(deadlineNanos);
+                    openedBatch = pendingBatch;
+                } else if (deadlineNanos - pendingBatch.deadlineNanos > 0L) {
+                    pendingBatch.deadlineNanos = deadlineNanos;
+                }
+
+                basePrices.put(destination, pendingBatch.computeIfAbsent(destination, key -> new CompletableFuture<>()));
+
+                if (pendingBatch.size() >= maxSize) {
+                    fullBatches.add(pendingBatch);
+                    pendingBatch = null;
+                }
+            }
+
+            if (openedBatch != pendingBatch) {
+                openedBatch = null;
+            }
+        }
+
+        for (Batch batch: fullBatches) {
+            dispatch(batch);
+        }
+
+        if (null != openedBatch) {
+            scheduleClose(openedBatch);
+        }
+
+        return basePrices;
+    }
+
+    private void scheduleClose(Batch batch) {
+        if (window.isZero() || window.isNegative()) {
+            close(batch);
+            return;
+        }
+
+        try {
+            taskScheduler.schedule(() -> close(batch), Instant.now().plus(window));
+        } catch (RuntimeException e) {
+            close(batch);
+        }
+    }
+
+    /**
+     * Dispatches the batch unless it has already been dispatched for being full.
+     */
+    private void close(Batch batch) {
+        synchronized (this) {
+            if (pendingBatch != batch) {
+                return;
+            }
+
+            pendingBatch = null;
+        }
+
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            upstreamExecutor.execute(() -> fetch(batch));
+        } catch (RejectedExecutionException e) {
+            UpstreamRejectedException rejection = UpstreamFutures.rejection();
+
+            for (CompletableFuture<Double> basePrice: batch.values()) {
+                basePrice.completeExceptionally(rejection);
+            }
+        }
+    }
+
+    private void fetch(Batch batch) {
+        Optional<Map<String, Double>> basePrices;
+
+        try {
+            basePrices = externalWebApiService.getBasePrices(batch.keySet(), batch.deadlineNanos);
+        } catch (Throwable e) {
+            for (CompletableFuture<Double> basePrice: batch.values()) {
+                basePrice.completeExceptionally(e);
+            }
+
+            return;
+        }
+
+        if (!basePrices.isPresent()) {
+            fetchOneByOne(batch);
+            return;
+        }
+
+        for (Map.Entry<String, CompletableFuture<Double>> entry: batch.entrySet()) {
+            entry.getValue().complete(basePrices.get().getOrDefault(entry.getKey(), UNAVAILABLE));
+        }
+    }
+
+    private void fetchOneByOne(Batch batch) {
+        long deadlineNanos = batch.deadlineNanos;
+
+        for (Map.Entry<String, CompletableFuture<Double>> entry: batch.entrySet()) {
+            String destination = entry.getKey();
+            CompletableFuture<Double> basePrice = entry.getValue();
+
+            UpstreamFutures.supplyAsync(
+                    () -> externalWebApiService.getBasePrice(destination, deadlineNanos), upstreamExecutor)
+                    .whenComplete((value, e) -> {
+                        if (null == e) {
+                            basePrice.complete(value);
+                        } else {
+                            basePrice.completeExceptionally(e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Base prices fetched together, with the latest deadline of the requests waiting for them.
+     */
+    private static final class Batch extends LinkedHashMap<String, CompletableFuture<Double>> {
+        private long deadlineNanos;
+
+        Batch(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
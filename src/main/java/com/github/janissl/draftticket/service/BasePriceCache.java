@@ -0,0 +1,293 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Process-wide destination to base price cache shared by all requests.
+ * <p>
+ * Entries are bounded by size and expire after a TTL. Popular entries are reloaded in the background
+ * once they are older than the refresh interval, so readers keep getting the current value while the
+ * upstream call is in flight. Negative prices (unavailable destinations) are kept for a shorter TTL.
+ * <p>
+ * Lookups are counted as {@code basePrice.cache.requests} tagged with {@code result=hit|miss}. A lookup that
+ * finds nothing through {@link #getIfPresent(String)} and then loads the price through {@link #get(String)}
+ * counts as a single miss.
+ * <p>
+ * The last price loaded for a destination is remembered beyond its expiry, bounded by the same maximum size,
+ * so that it can stand in for the current one while the base price service is not being called.
+ * <p>
+ * A missing price is loaded on the thread asking for it, outside of the locks of the cache, and concurrent
+ * callers for the same destination wait for that load. A thread blocked on the base price service therefore
+ * never holds a monitor, which would pin a virtual thread to its carrier thread.
+ */
+@Component
+public class BasePriceCache {
+    private final ExternalWebApiService externalWebApiService;
+    private final BasePriceExpiry expiry;
+    private final AsyncLoadingCache<String, Double> cache;
+    private final Cache<String, Double> lastKnownBasePrices;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public BasePriceCache(ExternalWebApiService externalWebApiService, MeterRegistry meterRegistry,
+                          @Value("${basePrice.cache.maximumSize:10000}") long maximumSize,
+                          @Value("${basePrice.cache.expireAfterWrite:10m}") Duration expireAfterWrite,
+                          @Value("${basePrice.cache.refreshAfterWrite:5m}") Duration refreshAfterWrite,
+                          @Value("${basePrice.cache.negativeExpireAfterWrite:30s}") Duration negativeExpireAfterWrite,
+                          @Qualifier("upstreamExecutor") Executor upstreamExecutor) {
+        this(externalWebApiService, maximumSize, expireAfterWrite, refreshAfterWrite, negativeExpireAfterWrite,
+                Ticker.systemTicker(), upstreamExecutor);
+        bindTo(meterRegistry);
+    }
+
+    BasePriceCache(ExternalWebApiService externalWebApiService, long maximumSize, Duration expireAfterWrite,
+                   Duration refreshAfterWrite, Duration negativeExpireAfterWrite, Ticker ticker, Executor executor) {
+        this.externalWebApiService = externalWebApiService;
+        this.lastKnownBasePrices = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .executor(executor)
+                .build();
+        this.expiry = new BasePriceExpiry(expireAfterWrite, negativeExpireAfterWrite);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(expiry)
+                .refreshAfterWrite(refreshAfterWrite)
+                .ticker(ticker)
+                .executor(executor)
+                .buildAsync(this::load);
+    }
+
+    private Double load(String destination) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Double basePrice = externalWebApiService.getBasePrice(destination);
+        lastKnownBasePrices.put(destination, basePrice);
+        return basePrice;
+    }
+
+    public Double get(String destination) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Double basePrice = cache.synchronous().getIfPresent(destination);
+
+        if (null != basePrice) {
+            hits.increment();
+            return basePrice;
+        }
+
+        misses.increment();
+
+        CompletableFuture<Double> load = new CompletableFuture<>();
+        CompletableFuture<Double> basePriceFuture = cache.get(destination, (key, executor) -> load);
+
+        if (basePriceFuture == load) {
+            try {
+                load.complete(load(destination));
+            } catch (Throwable e) {
+                load.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return basePriceFuture.join();
+        } catch (CompletionException e) {
+            throw UpstreamFutures.rethrow(e);
+        }
+    }
+
+    /**
+     * Looks up the base prices of several destinations without waiting for them. The destinations that are
+     * neither cached nor being loaded are handed to {@code loader} at once, so that they can be fetched together.
+     */
+    public Map<String, CompletableFuture<Double>> getAll(
+            Collection<String> destinations, Function<Set<String>, Map<String, CompletableFuture<Double>>> loader) {
+        Map<String, CompletableFuture<Double>> basePrices = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Double>> loads = new LinkedHashMap<>();
+
+        for (String destination: destinations) {
+            if (basePrices.containsKey(destination)) {
+                continue;
+            }
+
+            Double basePrice = cache.synchronous().getIfPresent(destination);
+
+            if (null != basePrice) {
+                hits.increment();
+                basePrices.put(destination, CompletableFuture.completedFuture(basePrice));
+                continue;
+            }
+
+            misses.increment();
+
+            CompletableFuture<Double> load = new CompletableFuture<>();
+            CompletableFuture<Double> basePriceFuture = cache.get(destination, (key, executor) -> load);
+
+            if (basePriceFuture == load) {
+                loads.put(destination, load);
+            }
+
+            basePrices.put(destination, basePriceFuture);
+        }
+
+        if (loads.isEmpty()) {
+            return basePrices;
+        }
+
+        Map<String, CompletableFuture<Double>> loadedBasePrices;
+
+        try {
+            loadedBasePrices = loader.apply(loads.keySet());
+        } catch (RuntimeException e) {
+            loads.values().forEach(load -> load.completeExceptionally(e));
+            throw e;
+        }
+
+        for (Map.Entry<String, CompletableFuture<Double>> load: loads.entrySet()) {
+            String destination = load.getKey();
+
+            loadedBasePrices.get(destination).whenComplete((basePrice, e) -> {
+                if (null == e) {
+                    lastKnownBasePrices.put(destination, basePrice);
+                    load.getValue().complete(basePrice);
+                } else {
+                    load.getValue().completeExceptionally(e);
+                }
+            });
+        }
+
+        return basePrices;
+    }
+
+    /**
+     * Returns the cached base price, if any, without counting the lookup as a hit or a miss. Like any other read
+     * it starts reloading a price older than the refresh interval.
+     */
+    Double peek(String destination) {
+        return cache.synchronous().getIfPresent(destination);
+    }
+
+    /**
+     * Returns the base prices that have been loaded and have not expired yet, without counting any lookups.
+     */
+    Map<String, Double> getCachedBasePrices() {
+        Map<String, Double> basePrices = new HashMap<>();
+
+        cache.asMap().forEach((destination, basePrice) -> {
+            if (basePrice.isDone() && !basePrice.isCompletedExceptionally()) {
+                basePrices.put(destination, basePrice.join());
+            }
+        });
+
+        return basePrices;
+    }
+
+    /**
+     * Caches base prices loaded {@code age} ago for what is left of their time to live, unless a destination has been
+     * loaded since. Base prices that would have expired by now are only remembered as last known ones.
+     */
+    void restore(Map<String, Double> basePrices, Duration age) {
+        Policy.VarExpiration<String, Double> expiration = cache.synchronous().policy().expireVariably()
+                .orElseThrow(() -> new IllegalStateException("The base price cache has no variable expiration."));
+
+        basePrices.forEach((destination, basePrice) -> {
+            lastKnownBasePrices.asMap().putIfAbsent(destination, basePrice);
+            long timeToLiveNanos = expiry.expireAfterCreate(destination, basePrice, 0L) - age.toNanos();
+
+            if (timeToLiveNanos > 0L) {
+                expiration.putIfAbsent(destination, basePrice, timeToLiveNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public Double getIfPresent(String destination) {
+        Double basePrice = cache.synchronous().getIfPresent(destination);
+
+        if (null != basePrice) {
+            hits.increment();
+        }
+
+        return basePrice;
+    }
+
+    /**
+     * Stores a base price the caller has loaded itself after {@link #getIfPresent(String)} found none,
+     * which is why it counts as a miss.
+     */
+    public void put(String destination, Double basePrice) {
+        misses.increment();
+        lastKnownBasePrices.put(destination, basePrice);
+        cache.put(destination, CompletableFuture.completedFuture(basePrice));
+    }
+
+    /**
+     * Returns the last base price loaded for the destination, however old, or {@code null} if there is none.
+     */
+    public Double getLastKnown(String destination) {
+        return lastKnownBasePrices.getIfPresent(destination);
+    }
+
+    void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("basePrice.cache.requests", hits, LongAdder::sum)
+                .description("Base price cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("basePrice.cache.requests", misses, LongAdder::sum)
+                .description("Base price cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("basePrice.cache.size", cache, basePrices -> basePrices.synchronous().estimatedSize())
+                .description("Approximate number of cached base prices")
+                .register(meterRegistry);
+    }
+
+    private static class BasePriceExpiry implements Expiry<String, Double> {
+        private final long expireAfterWriteNanos;
+        private final long negativeExpireAfterWriteNanos;
+
+        BasePriceExpiry(Duration expireAfterWrite, Duration negativeExpireAfterWrite) {
+            this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+            this.negativeExpireAfterWriteNanos = negativeExpireAfterWrite.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String destination, Double basePrice, long currentTime) {
+            return basePrice < 0.0 ? negativeExpireAfterWriteNanos : expireAfterWriteNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String destination, Double basePrice, long currentTime, long currentDuration) {
+            return expireAfterCreate(destination, basePrice, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String destination, Double basePrice, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.janissl.draftticket.service;
+
+import java.util.Map;
+
+/**
+ * Base prices of the destinations of a draft ticket, and whether any of them is a last known price used
+ * in place of a current one.
+ */
+final class BasePrices {
+    private final Map<String, Double> basePrices;
+    private final boolean stale;
+
+    BasePrices(Map<String, Double> basePrices, boolean stale) {
+        this.basePrices = basePrices;
+        this.stale = stale;
+    }
+
+    Double get(String destination) {
+        return basePrices.get(destination);
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.DraftTicket;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.Ticket;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Remembers priced draft tickets so that a repeated cart is answered without pricing it again.
+ * <p>
+ * Results are keyed by the cart as an order-independent multiset of passengers, together with the tax rates and
+ * the base prices they were priced with. Those inputs stand in for versions: once a tax rate or a base price
+ * changes, the cart gets a new key and its old results are no longer found and eventually evicted. Carts of more
+ * than {@code pricing.memo.maxPassengers} passengers are not remembered, and the remembered results are bounded
+ * by their estimated size in memory, {@code pricing.memo.maximumSize}.
+ * <p>
+ * Lookups are counted as {@code draftprice.memo.requests} tagged with {@code result=hit|miss}.
+ */
+@Component
+public class DraftPriceMemo {
+    /**
+     * Rough size in bytes of the two priced tickets of a passenger and their map entry in a remembered result.
+     */
+    private static final int PASSENGER_WEIGHT = 256;
+    private static final int ENTRY_WEIGHT = 64;
+
+    private final Cache<String, MemoisedDraftPrice> cache;
+    private final int maxPassengers;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DraftPriceMemo(MeterRegistry meterRegistry,
+                          @Value("${pricing.memo.maximumSize:32MB}") DataSize maximumSize,
+                          @Value("${pricing.memo.maxPassengers:100}") int maxPassengers) {
+        this.maxPassengers = maxPassengers;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .<String, MemoisedDraftPrice>weigher((key, draftPrice) ->
+                        ENTRY_WEIGHT + 2 * key.length() + PASSENGER_WEIGHT * draftPrice.ticketsBySignature.size())
+                .build();
+
+        FunctionCounter.builder("draftprice.memo.requests", hits, LongAdder::sum)
+                .description("Lookups of remembered draft prices")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("draftprice.memo.requests", misses, LongAdder::sum)
+                .description("Lookups of remembered draft prices")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tells whether the draft price of the passengers is to be remembered.
+     */
+    boolean isMemoisable(List<Passenger> passengers) {
+        return !passengers.isEmpty() && passengers.size() <= maxPassengers;
+    }
+
+    /**
+     * Returns the remembered draft price of the passengers with the given tax rates and base prices, or
+     * {@code null}. A base price of {@code null} means that it is not known right now, so nothing is looked up;
+     * the key of the cart is only built once every base price is known.
+     */
+    DraftPrice get(List<Passenger> passengers, TaxRateSnapshot applicableTaxes, Function<String, Double> basePrices) {
+        if (!isMemoisable(passengers)) {
+            return null;
+        }
+
+        Cart cart = null;
+        String key = null;
+
+        if (areKnown(passengers, basePrices)) {
+            cart = new Cart(passengers);
+            key = cart.key(applicableTaxes, basePrices);
+        }
+
+        MemoisedDraftPrice draftPrice = null == key ? null : cache.getIfPresent(key);
+
+        if (null == draftPrice) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return draftPrice.toDraftPrice(cart);
+    }
+
+    /**
+     * Remembers the priced tickets of the passengers, two per passenger in the order of the passengers.
+     */
+    void put(List<Passenger> passengers, TaxRateSnapshot applicableTaxes, Function<String, Double> basePrices,
+             DraftPrice draftPrice) {
+        if (!isMemoisable(passengers)) {
+            return;
+        }
+
+        Cart cart = new Cart(passengers);
+        String key = cart.key(applicableTaxes, basePrices);
+
+        if (null != key) {
+            cache.put(key, new MemoisedDraftPrice(cart, draftPrice));
+        }
+    }
+
+    private static boolean areKnown(List<Passenger> passengers, Function<String, Double> basePrices) {
+        String previousDestination = null;
+
+        for (Passenger passenger: passengers) {
+            String destination = passenger.getDestination();
+
+            if (!destination.equals(previousDestination) && null == basePrices.apply(destination)) {
+                return false;
+            }
+
+            previousDestination = destination;
+        }
+
+        return true;
+    }
+
+    /**
+     * Passengers reduced to their signatures: passenger type, items of luggage and destination, which are all that
+     * their tickets depend on.
+     */
+    static final class Cart {
+        private final String[] signatures;
+        private final String canonicalForm;
+        private final SortedSet<String> destinations = new TreeSet<>();
+
+        private Cart(List<Passenger> passengers) {
+            SortedMap<String, Integer> passengersBySignature = new TreeMap<>();
+            signatures = new String[passengers.size()];
+
+            for (int i = 0; i < signatures.length; i++) {
+                Passenger passenger = passengers.get(i);
+                signatures[i] = passenger.getPassengerType() + ":" + passenger.getItemsOfLuggage() + ":"
+                        + passenger.getDestination();
+                passengersBySignature.merge(signatures[i], 1, Integer::sum);
+                destinations.add(passenger.getDestination());
+            }
+
+            StringBuilder canonicalForm = new StringBuilder();
+
+            for (Map.Entry<String, Integer> signature: passengersBySignature.entrySet()) {
+                canonicalForm.append(signature.getValue()).append('*')
+                        .append(signature.getKey().length()).append(':').append(signature.getKey());
+            }
+
+            this.canonicalForm = canonicalForm.toString();
+        }
+
+        private String key(TaxRateSnapshot applicableTaxes, Function<String, Double> basePrices) {
+            StringBuilder key = new StringBuilder(canonicalForm).append('|');
+
+            for (int i = 0; i < applicableTaxes.size(); i++) {
+                key.append(applicableTaxes.getRate(i)).append(',');
+            }
+
+            key.append('|');
+
+            for (String destination: destinations) {
+                Double basePrice = basePrices.apply(destination);
+
+                if (null == basePrice) {
+                    return null;
+                }
+
+                key.append(basePrice).append(',');
+            }
+
+            return key.toString();
+        }
+    }
+
+    /**
+     * Priced tickets of a remembered cart. They are copies of the tickets of the response they were priced for and
+     * are copied again for every hit, so that no two responses share a ticket.
+     */
+    private static final class MemoisedDraftPrice {
+        private final Map<String, List<Ticket>> ticketsBySignature = new HashMap<>();
+        private final long totalPriceInMinorUnits;
+
+        private MemoisedDraftPrice(Cart cart, DraftPrice draftPrice) {
+            List<Ticket> tickets = draftPrice.getTickets();
+
+            for (int i = 0; i < cart.signatures.length; i++) {
+                if (!ticketsBySignature.containsKey(cart.signatures[i])) {
+                    ticketsBySignature.put(cart.signatures[i],
+                            Arrays.asList(copy(tickets.get(2 * i)), copy(tickets.get(2 * i + 1))));
+                }
+            }
+
+            this.totalPriceInMinorUnits = draftPrice.getTotalPrice().movePointRight(2).longValueExact();
+        }
+
+        private static Ticket copy(Ticket ticket) {
+            Ticket copy = new Ticket(ticket.getTicketType(), ticket.getBasePrice(), ticket.getCount());
+            copy.setPrice(ticket.getPrice());
+            return copy;
+        }
+
+        private DraftPrice toDraftPrice(Cart cart) {
+            List<Ticket> tickets = new ArrayList<>(2 * cart.signatures.length);
+
+            for (String signature: cart.signatures) {
+                for (Ticket ticket: ticketsBySignature.get(signature)) {
+                    tickets.add(copy(ticket));
+                }
+            }
+
+            DraftTicket draftTicket = new DraftTicket(tickets, totalPriceInMinorUnits);
+            DraftPrice draftPrice = new DraftPrice(draftTicket);
+            draftPrice.setTotalPrice(draftTicket.getTotalPrice());
+
+            return draftPrice;
+        }
+    }
+}
@@ -1,109 +1,428 @@
 package com.github.janissl.draftticket.service;
 
-import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
+import com.github.janissl.draftticket.exception.DataUnavailableException;
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
 import com.github.janissl.draftticket.model.*;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class PriceService {
-    private final ExternalWebApiService externalWebApiService;
+    /**
+     * Timer of the stages of pricing a draft ticket, tagged with {@code stage=validation|upstream|pricing}.
+     * The {@code serialization} stage is recorded by the JSON message converter.
+     */
+    public static final String STAGE_TIMER = "draftprice.stage";
 
-    public PriceService(ExternalWebApiService externalWebApiService) {
-        this.externalWebApiService = externalWebApiService;
+    private final TicketService ticketService;
+    private final TaxRateProvider taxRateProvider;
+    private final DraftPriceMemo draftPriceMemo;
+    private final PriceTable priceTable;
+    private final Executor upstreamExecutor;
+    private final Duration requestTimeout;
+    private final Timer validationTimer;
+    private final Timer upstreamTimer;
+    private final Timer pricingTimer;
+    private final DistributionSummary passengersSummary;
+
+    public PriceService(TicketService ticketService, TaxRateProvider taxRateProvider, DraftPriceMemo draftPriceMemo,
+                        PriceTable priceTable, @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                        @Value("${pricing.request.timeout:5s}") Duration requestTimeout,
+                        MeterRegistry meterRegistry) {
+        this.ticketService = ticketService;
+        this.taxRateProvider = taxRateProvider;
+        this.draftPriceMemo = draftPriceMemo;
+        this.priceTable = priceTable;
+        this.upstreamExecutor = upstreamExecutor;
+        this.requestTimeout = requestTimeout;
+        this.validationTimer = stageTimer(meterRegistry, "validation");
+        this.upstreamTimer = stageTimer(meterRegistry, "upstream");
+        this.pricingTimer = stageTimer(meterRegistry, "pricing");
+        this.passengersSummary = DistributionSummary.builder("draftprice.passengers")
+                .description("Number of passengers per draft ticket")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent in each stage of pricing a draft ticket")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public List<Double> getApplicableTaxes() throws ExternalServiceUnavailableException, InvalidUserInputException {
-        List<Double> applicableTaxes = Arrays.asList(externalWebApiService.getApplicableTaxes());
+        return taxRateProvider.getSnapshot().toList();
+    }
 
-        for (double rate: applicableTaxes) {
-            if (rate < 0.0) {
-                throw new InvalidUserInputException("Tax rates cannot be negative.");
-            }
+    public static Double getTicketNetPrice(Ticket ticket) throws InvalidUserInputException {
+        PricingKernel.validateTicket(ticket);
+        return PricingKernel.getNetPrice(ticket.getTicketType(), ticket.getBasePrice(), ticket.getCount());
+    }
+
+    public static Double calculateTotalTax(Double netPrice, List<Double> applicableTaxes) {
+        double totalTax = 0.0;
+
+        for (int i = 0; i < applicableTaxes.size(); i++) {
+            totalTax += netPrice * applicableTaxes.get(i) / 100.0;
         }
 
-        return applicableTaxes;
+        return totalTax;
     }
 
-    private static void validateTicketData(Ticket ticket) throws InvalidUserInputException {
-        List<String> dataValidationMessages = new ArrayList<>();
+    public static BigDecimal getTotalPriceOfTicket(Double netPrice, List<Double> applicableTaxes) {
+        double totalPrice = netPrice + calculateTotalTax(netPrice, applicableTaxes);
+        return BigDecimal.valueOf(PricingKernel.roundToMinorUnits(totalPrice), 2);
+    }
+
+    public static BigDecimal getTotalPriceOfDraftTicket(List<Ticket> tickets) {
+        BigDecimal totalPrice = BigDecimal.ZERO;
 
-        if (null == ticket.getTicketType()) {
-            dataValidationMessages.add("No passenger type has been set for a ticket.");
+        for (int i = 0; i < tickets.size(); i++) {
+            totalPrice = totalPrice.add(tickets.get(i).getPrice());
         }
 
-        if (ticket.getBasePrice() < 0.0) {
-            dataValidationMessages.add("Ticket base price cannot be negative.");
+        return totalPrice;
+    }
+
+    static DraftPrice priceDraftTicket(List<Ticket> tickets, TaxRateSnapshot applicableTaxes, boolean stale)
+            throws InvalidUserInputException {
+        DraftTicket draftTicket = new DraftTicket(tickets, applicableTaxes);
+        DraftPrice draftPrice = new DraftPrice(draftTicket);
+        draftPrice.setTotalPrice(draftTicket.getTotalPrice());
+        draftPrice.setStale(stale);
+
+        return draftPrice;
+    }
+
+    /**
+     * Generates the tickets of the passengers and prices them with the {@link PriceTable}, with exactly the result
+     * of {@link #priceDraftTicket(List, TaxRateSnapshot, boolean)}. The tickets are not validated again: the
+     * passengers have been validated and the base prices checked before.
+     */
+    static DraftPrice priceDraftTicket(List<Passenger> passengers, BasePrices basePrices, TaxRateSnapshot applicableTaxes,
+                                       boolean stale, PriceTable priceTable) {
+        List<Ticket> tickets = new ArrayList<>(2 * passengers.size());
+        long totalPriceInMinorUnits = 0L;
+
+        for (Passenger passenger: passengers) {
+            Double basePrice = basePrices.get(passenger.getDestination());
+            PriceTable.Row prices = priceTable.get(passenger.getDestination(), basePrice, applicableTaxes);
+
+            for (Ticket ticket: TicketService.generateTicketsForPassenger(basePrice, passenger)) {
+                long priceInMinorUnits = prices.getPriceInMinorUnits(ticket.getTicketType(), ticket.getCount());
+                ticket.setPrice(BigDecimal.valueOf(priceInMinorUnits, 2));
+                totalPriceInMinorUnits += priceInMinorUnits;
+                tickets.add(ticket);
+            }
         }
 
-        if (ticket.getCount() < 1) {
-            dataValidationMessages.add("Number of items for a ticket cannot be negative.");
+        DraftTicket draftTicket = new DraftTicket(tickets, totalPriceInMinorUnits);
+        DraftPrice draftPrice = new DraftPrice(draftTicket);
+        draftPrice.setTotalPrice(draftTicket.getTotalPrice());
+        draftPrice.setStale(stale);
+
+        return draftPrice;
+    }
+
+    public DraftPrice getDraftPrice(List<Passenger> passengers) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long start = System.nanoTime();
+        long validated = validate(passengers, start, false);
+
+        DraftPrice memoisedDraftPrice = getMemoisedDraftPrice(passengers, validated);
+
+        if (null != memoisedDraftPrice) {
+            return memoisedDraftPrice;
         }
 
-        if (!dataValidationMessages.isEmpty()) {
-            throw new InvalidUserInputException(String.join(" ", dataValidationMessages));
+        return fetchAndPrice(passengers, start, validated, memoisingPricing(passengers));
+    }
+
+    /**
+     * Prices the passengers like {@link #getDraftPrice(List)} without waiting for the external services. The passengers
+     * are validated on the calling thread; the draft ticket is priced on the thread of the last external service to
+     * answer. The future is not failed once the request timeout has passed, which is up to the caller.
+     */
+    public CompletableFuture<DraftPrice> getDraftPriceAsync(List<Passenger> passengers) throws InvalidUserInputException {
+        long start = System.nanoTime();
+        long validated = validate(passengers, start, false);
+
+        DraftPrice memoisedDraftPrice = getMemoisedDraftPrice(passengers, validated);
+
+        if (null != memoisedDraftPrice) {
+            return CompletableFuture.completedFuture(memoisedDraftPrice);
         }
+
+        long deadlineNanos = start + requestTimeout.toNanos();
+        CompletableFuture<TaxRateSnapshot> taxRequest = taxRateProvider.getSnapshotAsync(upstreamExecutor);
+        Map<String, CompletableFuture<Double>> basePriceRequests =
+                ticketService.requestBasePrices(passengers, deadlineNanos);
+        List<CompletableFuture<?>> requests = new ArrayList<>(basePriceRequests.values());
+        requests.add(taxRequest);
+
+        CompletableFuture<DraftPrice> draftPrice = new CompletableFuture<>();
+
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).whenComplete((fetched, e) -> {
+            try {
+                draftPrice.complete(price(taxRequest, basePriceRequests, deadlineNanos, validated,
+                        memoisingPricing(passengers)));
+            } catch (Throwable failure) {
+                draftPrice.completeExceptionally(failure);
+            }
+        });
+
+        return draftPrice;
     }
 
-    public static Double getTicketNetPrice(Ticket ticket) throws InvalidUserInputException {
-        Double percentageDiscountChild = 50.0;
-        Double percentageLuggage = 30.0;
-        Double netPrice;
+    private Pricing<DraftPrice> memoisingPricing(List<Passenger> passengers) {
+        return (applicableTaxes, basePrices, stale) -> {
+            DraftPrice draftPrice = priceDraftTicket(passengers, basePrices, applicableTaxes, stale, priceTable);
+
+            if (!stale) {
+                draftPriceMemo.put(passengers, applicableTaxes, basePrices::get, draftPrice);
+            }
+
+            return draftPrice;
+        };
+    }
+
+    /**
+     * Prices the passengers like {@link #getDraftPrice(List)}, but returns one line per ticket type and destination
+     * instead of two tickets per passenger. Luggage lines of passengers without luggage are left out.
+     */
+    public AggregatedDraftPrice getAggregatedDraftPrice(List<Passenger> passengers)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long start = System.nanoTime();
+        long validated = validate(passengers, start, true);
+
+        return fetchAndPrice(passengers, start, validated, (applicableTaxes, basePrices, stale) ->
+                priceAggregatedDraftTicket(passengers, basePrices, applicableTaxes, stale, priceTable));
+    }
+
+    /**
+     * Collapses the tickets of the passengers into lines of the same ticket type and destination, in the order
+     * in which they first appear. Every ticket is priced with the {@link PriceTable}, exactly as
+     * {@link PricingKernel#priceTickets} would price it, so the total price is the same as that of the tickets.
+     */
+    static AggregatedDraftPrice priceAggregatedDraftTicket(List<Passenger> passengers, BasePrices basePrices,
+                                                           TaxRateSnapshot applicableTaxes, boolean stale,
+                                                           PriceTable priceTable) {
+        Map<String, LineTotal[]> linesByDestination = new HashMap<>();
+        List<LineTotal> lines = new ArrayList<>();
+
+        for (Passenger passenger: passengers) {
+            String destination = passenger.getDestination();
+            PriceTable.Row prices = priceTable.get(destination, basePrices.get(destination), applicableTaxes);
+            LineTotal[] destinationLines = linesByDestination.computeIfAbsent(destination,
+                    key -> new LineTotal[TicketType.values().length]);
+
+            addToLine(lines, destinationLines, prices, TicketType.valueOf(passenger.getPassengerType().toString()),
+                    destination, 1);
 
-        validateTicketData(ticket);
+            if (passenger.getItemsOfLuggage() > 0) {
+                addToLine(lines, destinationLines, prices, TicketType.LUGGAGE, destination,
+                        passenger.getItemsOfLuggage());
+            }
+        }
 
-        switch (ticket.getTicketType()) {
-            case ADULT:
-                netPrice = ticket.getBasePrice();
-                break;
-            case CHILD:
-                netPrice = ticket.getBasePrice() * percentageDiscountChild / 100.0;
-                break;
-            case LUGGAGE:
-                netPrice = ticket.getCount() * ticket.getBasePrice() * percentageLuggage / 100.0;
-                break;
-            default:
-                throw new InvalidUserInputException(String.format(
-                            "Incorrect passenger type of the ticket: %s.",
-                            ticket.getTicketType().toString()));
+        List<TicketLine> ticketLines = new ArrayList<>(lines.size());
+        long totalPriceInMinorUnits = 0L;
+
+        for (LineTotal line: lines) {
+            ticketLines.add(new TicketLine(line.ticketType, line.destination, line.count,
+                    BigDecimal.valueOf(line.unitPriceInMinorUnits, 2), BigDecimal.valueOf(line.priceInMinorUnits, 2)));
+            totalPriceInMinorUnits += line.priceInMinorUnits;
         }
 
-        return netPrice;
+        AggregatedDraftPrice draftPrice = new AggregatedDraftPrice(ticketLines,
+                ticketLines.isEmpty() ? BigDecimal.ZERO : BigDecimal.valueOf(totalPriceInMinorUnits, 2));
+        draftPrice.setStale(stale);
+
+        return draftPrice;
     }
 
-    public static Double calculateTotalTax(Double netPrice, List<Double> applicableTaxes) {
-        List<Double> taxAmounts = new ArrayList<>();
+    private static void addToLine(List<LineTotal> lines, LineTotal[] destinationLines, PriceTable.Row prices,
+                                  TicketType ticketType, String destination, int count) {
+        LineTotal line = destinationLines[ticketType.ordinal()];
 
-        for (Double rate: applicableTaxes){
-            taxAmounts.add(netPrice * rate / 100.0);
+        if (null == line) {
+            line = new LineTotal(ticketType, destination, prices.getPriceInMinorUnits(ticketType, 1));
+            destinationLines[ticketType.ordinal()] = line;
+            lines.add(line);
         }
 
-        return taxAmounts.stream().reduce(0.0, Double::sum);
+        line.count += count;
+        line.priceInMinorUnits += prices.getPriceInMinorUnits(ticketType, count);
     }
 
-    public static BigDecimal getTotalPriceOfTicket(Double netPrice, List<Double> applicableTaxes) {
-        double totalTax = calculateTotalTax(netPrice, applicableTaxes);
-        double totalPrice = netPrice + totalTax;
-        return BigDecimal.valueOf(totalPrice).setScale(2, RoundingMode.HALF_UP);
+    private long validate(List<Passenger> passengers, long start, boolean aggregate) throws InvalidUserInputException {
+        passengersSummary.record(passengers.size());
+
+        if (aggregate) {
+            ticketService.validateAggregatedPassengerData(passengers);
+        } else {
+            ticketService.validatePassengerData(passengers);
+        }
+
+        long validated = System.nanoTime();
+        validationTimer.record(validated - start, TimeUnit.NANOSECONDS);
+
+        return validated;
     }
 
-    public static BigDecimal getTotalPriceOfDraftTicket(List<Ticket> tickets) {
-        return tickets.stream().map(Ticket::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Fetches the taxes and the base prices of the passengers within the request timeout and prices them.
+     */
+    private <T> T fetchAndPrice(List<Passenger> passengers, long start, long validated, Pricing<T> pricing)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long deadlineNanos = start + requestTimeout.toNanos();
+        CompletableFuture<TaxRateSnapshot> taxRequest = taxRateProvider.getSnapshotAsync(upstreamExecutor);
+        Map<String, CompletableFuture<Double>> basePriceRequests =
+                ticketService.requestBasePrices(passengers, deadlineNanos);
+
+        return price(taxRequest, basePriceRequests, deadlineNanos, validated, pricing);
     }
 
-    public DraftPrice getDraftPrice(List<Passenger> passengers) throws ExternalServiceUnavailableException, InvalidUserInputException {
-        TicketService ticketService = new TicketService(externalWebApiService);
-        List<Double> applicableTaxes = Arrays.asList(externalWebApiService.getApplicableTaxes());
+    /**
+     * Waits for the taxes and the base prices until the deadline and prices them. Does not wait at all if every
+     * lookup has completed already.
+     */
+    private <T> T price(CompletableFuture<TaxRateSnapshot> taxRequest,
+                        Map<String, CompletableFuture<Double>> basePriceRequests, long deadlineNanos, long validated,
+                        Pricing<T> pricing) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        TaxRateSnapshot applicableTaxes;
+        BasePrices basePrices;
 
-        DraftTicket draftTicket = ticketService.createDraftTicket(passengers, applicableTaxes);
-        DraftPrice draftPrice = new DraftPrice(draftTicket);
-        draftPrice.setTotalPrice(getTotalPriceOfDraftTicket(draftTicket.getTickets()));
+        try {
+            applicableTaxes = UpstreamFutures.await(taxRequest, deadlineNanos);
+            basePrices = ticketService.awaitBasePrices(basePriceRequests, deadlineNanos);
+        } finally {
+            upstreamTimer.record(System.nanoTime() - validated, TimeUnit.NANOSECONDS);
+        }
+
+        long fetched = System.nanoTime();
+
+        try {
+            return pricing.price(applicableTaxes, basePrices,
+                    basePrices.isStale() || taxRateProvider.isStale(applicableTaxes));
+        } finally {
+            pricingTimer.record(System.nanoTime() - fetched, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Looks the passengers up with the current taxes and the cached base prices of their destinations. Nothing is
+     * looked up unless all of them are at hand and up to date, so that a remembered draft price is never staler
+     * than pricing the cart again would be. A hit is recorded as the pricing stage.
+     */
+    private DraftPrice getMemoisedDraftPrice(List<Passenger> passengers, long validated) {
+        if (!draftPriceMemo.isMemoisable(passengers)) {
+            return null;
+        }
+
+        TaxRateSnapshot applicableTaxes = taxRateProvider.getLastKnownSnapshot();
+
+        if (null == applicableTaxes || taxRateProvider.isStale(applicableTaxes)) {
+            return null;
+        }
+
+        DraftPrice draftPrice = draftPriceMemo.get(passengers, applicableTaxes, ticketService::peekBasePrice);
+
+        if (null != draftPrice) {
+            pricingTimer.record(System.nanoTime() - validated, TimeUnit.NANOSECONDS);
+        }
 
         return draftPrice;
     }
+
+    /**
+     * Prices independent draft tickets in one go. The taxes are fetched once and every distinct destination is
+     * looked up once for the whole batch. A draft ticket that fails does not affect the others; only a failure
+     * to get the applicable taxes fails the batch as a whole. The draft tickets are priced one after another on
+     * the calling thread, so that a large batch does not take over threads shared with other requests.
+     */
+    public List<DraftPriceResult> getDraftPrices(List<List<Passenger>> passengerLists)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        long deadlineNanos = System.nanoTime() + requestTimeout.toNanos();
+        CompletableFuture<TaxRateSnapshot> taxRequest = taxRateProvider.getSnapshotAsync(upstreamExecutor);
+
+        DraftPriceResult[] results = new DraftPriceResult[passengerLists.size()];
+        List<Passenger> validPassengers = new ArrayList<>();
+
+        for (int i = 0; i < passengerLists.size(); i++) {
+            passengersSummary.record(passengerLists.get(i).size());
+
+            try {
+                ticketService.validatePassengerData(passengerLists.get(i));
+                validPassengers.addAll(passengerLists.get(i));
+            } catch (InvalidUserInputException e) {
+                results[i] = DraftPriceResult.failure(e);
+            }
+        }
+
+        Map<String, CompletableFuture<Double>> basePriceRequests =
+                ticketService.requestBasePrices(validPassengers, deadlineNanos);
+        TaxRateSnapshot applicableTaxes = UpstreamFutures.await(taxRequest, deadlineNanos);
+        boolean staleTaxes = taxRateProvider.isStale(applicableTaxes);
+
+        for (int i = 0; i < passengerLists.size(); i++) {
+            if (null != results[i]) {
+                continue;
+            }
+
+            List<Passenger> passengers = passengerLists.get(i);
+            Map<String, CompletableFuture<Double>> draftBasePriceRequests = new LinkedHashMap<>();
+
+            for (Passenger passenger: passengers) {
+                draftBasePriceRequests.put(passenger.getDestination(), basePriceRequests.get(passenger.getDestination()));
+            }
+
+            BasePrices basePrices;
+
+            try {
+                basePrices = ticketService.awaitBasePrices(draftBasePriceRequests, deadlineNanos);
+            } catch (ExternalServiceUnavailableException | InvalidUserInputException | DataUnavailableException e) {
+                results[i] = DraftPriceResult.failure(e);
+                continue;
+            }
+
+            results[i] = DraftPriceResult.success(priceDraftTicket(passengers, basePrices, applicableTaxes,
+                    basePrices.isStale() || staleTaxes, priceTable));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    @FunctionalInterface
+    private interface Pricing<T> {
+        T price(TaxRateSnapshot applicableTaxes, BasePrices basePrices, boolean stale) throws InvalidUserInputException;
+    }
+
+    private static final class LineTotal {
+        private final TicketType ticketType;
+        private final String destination;
+        private final long unitPriceInMinorUnits;
+        private int count;
+        private long priceInMinorUnits;
+
+        private LineTotal(TicketType ticketType, String destination, long unitPriceInMinorUnits) {
+            this.ticketType = ticketType;
+            this.destination = destination;
+            this.unitPriceInMinorUnits = unitPriceInMinorUnits;
+        }
+    }
 }
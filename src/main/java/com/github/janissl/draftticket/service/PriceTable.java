@@ -0,0 +1,95 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.janissl.draftticket.model.TicketType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Final prices of every ticket type per destination, in minor units, for the current base price and taxes.
+ * <p>
+ * For a given base price and tax snapshot the price of an ADULT or a CHILD ticket, and that of a LUGGAGE ticket
+ * with a given number of items, never change. A row of the table holds them all, up to
+ * {@link #TABULATED_ITEMS_OF_LUGGAGE} items, and is recomputed on the first lookup after the base price of its
+ * destination or the tax snapshot has changed. Luggage is priced per ticket rather than per item, as the original
+ * implementation rounds the price of the whole ticket, so the result is exactly that of {@link PricingKernel}.
+ */
+@Component
+public class PriceTable {
+    static final int TABULATED_ITEMS_OF_LUGGAGE = 8;
+
+    private final Cache<String, Row> rows;
+
+    @Autowired
+    public PriceTable(@Value("${basePrice.cache.maximumSize:10000}") long maximumSize) {
+        this.rows = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Returns the prices of the destination at the base price and taxes, computing them if they are not in the
+     * table yet or were computed for another base price or tax snapshot.
+     */
+    public Row get(String destination, double basePrice, TaxRateSnapshot applicableTaxes) {
+        Row row = rows.getIfPresent(destination);
+
+        if (null == row || !row.isFor(basePrice, applicableTaxes)) {
+            row = new Row(basePrice, applicableTaxes);
+            rows.put(destination, row);
+        }
+
+        return row;
+    }
+
+    public static final class Row {
+        private final double basePrice;
+        private final TaxRateSnapshot applicableTaxes;
+        private final long adultPrice;
+        private final long childPrice;
+        private final long[] luggagePrices = new long[TABULATED_ITEMS_OF_LUGGAGE + 1];
+
+        Row(double basePrice, TaxRateSnapshot applicableTaxes) {
+            this.basePrice = basePrice;
+            this.applicableTaxes = applicableTaxes;
+            this.adultPrice = computePrice(TicketType.ADULT, 1);
+            this.childPrice = computePrice(TicketType.CHILD, 1);
+
+            for (int items = 1; items <= TABULATED_ITEMS_OF_LUGGAGE; items++) {
+                luggagePrices[items] = computePrice(TicketType.LUGGAGE, items);
+            }
+        }
+
+        private long computePrice(TicketType ticketType, int count) {
+            return PricingKernel.getTotalPriceInMinorUnits(PricingKernel.getNetPrice(ticketType, basePrice, count),
+                    applicableTaxes);
+        }
+
+        /**
+         * Tells whether the row has been computed for the base price and the very same tax snapshot. A refreshed
+         * snapshot is a new instance even if its rates are the same, which merely recomputes the row once.
+         */
+        boolean isFor(double basePrice, TaxRateSnapshot applicableTaxes) {
+            return this.applicableTaxes == applicableTaxes
+                    && Double.doubleToLongBits(this.basePrice) == Double.doubleToLongBits(basePrice);
+        }
+
+        /**
+         * Returns the price of a ticket in minor units, the same as {@link PricingKernel#priceTickets} gives it.
+         */
+        public long getPriceInMinorUnits(TicketType ticketType, int count) {
+            switch (ticketType) {
+                case ADULT:
+                    return adultPrice;
+                case CHILD:
+                    return childPrice;
+                default:
+                    return count >= 1 && count <= TABULATED_ITEMS_OF_LUGGAGE
+                            ? luggagePrices[count]
+                            : computePrice(ticketType, count);
+            }
+        }
+    }
+}
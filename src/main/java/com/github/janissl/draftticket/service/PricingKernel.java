@@ -0,0 +1,128 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.Ticket;
+import com.github.janissl.draftticket.model.TicketType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ticket pricing on primitive values. Prices are calculated in {@code double} exactly like the original
+ * {@code Double}/{@code BigDecimal} implementation and rounded to minor units (cents) with the same
+ * {@code HALF_UP} result, without allocating anything per ticket except the resulting ticket price.
+ */
+public final class PricingKernel {
+    static final double PERCENTAGE_DISCOUNT_CHILD = 50.0;
+    static final double PERCENTAGE_LUGGAGE = 30.0;
+
+    /**
+     * Amounts of up to 10 million are rounded without {@code BigDecimal}. Below this bound the rounding error
+     * of {@code amount * 100.0} stays well within {@link #HALF_CENT_TOLERANCE}.
+     */
+    private static final double MAX_FAST_PATH_MINOR_UNITS = 1.0e9;
+    private static final double HALF_CENT_TOLERANCE = 1.0e-6;
+
+    private PricingKernel() {
+    }
+
+    public static void validateTicket(Ticket ticket) throws InvalidUserInputException {
+        boolean missingTicketType = null == ticket.getTicketType();
+        boolean negativeBasePrice = ticket.getBasePrice() < 0.0;
+        boolean invalidCount = ticket.getCount() < 1;
+
+        if (missingTicketType || negativeBasePrice || invalidCount) {
+            List<String> dataValidationMessages = new ArrayList<>();
+
+            if (missingTicketType) {
+                dataValidationMessages.add("No passenger type has been set for a ticket.");
+            }
+
+            if (negativeBasePrice) {
+                dataValidationMessages.add("Ticket base price cannot be negative.");
+            }
+
+            if (invalidCount) {
+                dataValidationMessages.add("Number of items for a ticket cannot be negative.");
+            }
+
+            throw new InvalidUserInputException(String.join(" ", dataValidationMessages));
+        }
+    }
+
+    public static double getNetPrice(TicketType ticketType, double basePrice, int count) {
+        switch (ticketType) {
+            case ADULT:
+                return basePrice;
+            case CHILD:
+                return basePrice * PERCENTAGE_DISCOUNT_CHILD / 100.0;
+            case LUGGAGE:
+                return count * basePrice * PERCENTAGE_LUGGAGE / 100.0;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported ticket type: %s.", ticketType));
+        }
+    }
+
+    /**
+     * Sums the tax amounts one rate at a time, in the order of the snapshot, so that the result is bit for bit
+     * the same as summing a list of per-rate tax amounts.
+     */
+    public static double getTotalTax(double netPrice, TaxRateSnapshot applicableTaxes) {
+        double totalTax = 0.0;
+
+        for (int i = 0; i < applicableTaxes.size(); i++) {
+            totalTax += netPrice * applicableTaxes.getRate(i) / 100.0;
+        }
+
+        return totalTax;
+    }
+
+    public static long getTotalPriceInMinorUnits(double netPrice, TaxRateSnapshot applicableTaxes) {
+        return roundToMinorUnits(netPrice + getTotalTax(netPrice, applicableTaxes));
+    }
+
+    /**
+     * Returns the same value as {@code BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP)} in minor units.
+     * <p>
+     * {@code BigDecimal.valueOf} rounds the shortest decimal representation of the double, which may differ from
+     * its binary value. The two can only round differently when the amount lies within a tiny distance of a
+     * half cent, so only such amounts (and very large ones) take the exact {@code BigDecimal} path.
+     */
+    public static long roundToMinorUnits(double amount) {
+        double minorUnits = amount * 100.0;
+
+        if (minorUnits >= 0.0 && minorUnits < MAX_FAST_PATH_MINOR_UNITS) {
+            double wholeMinorUnits = Math.floor(minorUnits);
+            double fraction = minorUnits - wholeMinorUnits;
+
+            if (Math.abs(fraction - 0.5) > HALF_CENT_TOLERANCE) {
+                return (long) wholeMinorUnits + (fraction > 0.5 ? 1L : 0L);
+            }
+        }
+
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Validates and prices every ticket, and returns the total price of all tickets in minor units.
+     */
+    public static long priceTickets(List<Ticket> tickets, TaxRateSnapshot applicableTaxes)
+            throws InvalidUserInputException {
+        long totalPriceInMinorUnits = 0L;
+
+        for (int i = 0; i < tickets.size(); i++) {
+            Ticket ticket = tickets.get(i);
+            validateTicket(ticket);
+
+            double netPrice = getNetPrice(ticket.getTicketType(), ticket.getBasePrice(), ticket.getCount());
+            long priceInMinorUnits = getTotalPriceInMinorUnits(netPrice, applicableTaxes);
+
+            ticket.setPrice(BigDecimal.valueOf(priceInMinorUnits, 2));
+            totalPriceInMinorUnits += priceInMinorUnits;
+        }
+
+        return totalPriceInMinorUnits;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ReactiveExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.Passenger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Prices draft tickets without blocking a thread while waiting for the external services.
+ * <p>
+ * The taxes and every distinct destination are requested at once and combined when all of them have arrived.
+ * The taxes are fetched with the non-blocking HTTP client. Base prices missing from the cache are requested through
+ * {@link TicketService#requestBasePrices(List, long)}, so concurrent misses are coalesced and go through the same
+ * batching, retries, hedging and circuit breaker as those of {@link PriceService}, on the upstream executor.
+ * Caching, validation and pricing rules are the same as those of {@link PriceService} and {@link TicketService};
+ * unlike the blocking path, the first failing lookup fails the draft ticket right away.
+ */
+@Service
+@ConditionalOnProperty(name = "pricing.reactive.enabled", havingValue = "true")
+public class ReactivePriceService {
+    private final TicketService ticketService;
+    private final BasePriceCache basePriceCache;
+    private final TaxRateProvider taxRateProvider;
+    private final PriceTable priceTable;
+    private final ReactiveExternalWebApiService reactiveExternalWebApiService;
+    private final Duration requestTimeout;
+
+    public ReactivePriceService(TicketService ticketService, BasePriceCache basePriceCache,
+                                TaxRateProvider taxRateProvider, PriceTable priceTable,
+                                ReactiveExternalWebApiService reactiveExternalWebApiService,
+                                @Value("${pricing.request.timeout:5s}") Duration requestTimeout) {
+        this.ticketService = ticketService;
+        this.basePriceCache = basePriceCache;
+        this.taxRateProvider = taxRateProvider;
+        this.priceTable = priceTable;
+        this.reactiveExternalWebApiService = reactiveExternalWebApiService;
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Mono<DraftPrice> getDraftPrice(List<Passenger> passengers) {
+        return Mono.defer(() -> {
+            try {
+                ticketService.validatePassengerData(passengers);
+            } catch (InvalidUserInputException e) {
+                return Mono.error(e);
+            }
+
+            return Mono.zip(getApplicableTaxes(), getBasePrices(passengers))
+                    .flatMap(prices -> Mono.fromCallable(() -> PriceService.priceDraftTicket(passengers,
+                            prices.getT2(),
+                            prices.getT1(),
+                            prices.getT2().isStale() || taxRateProvider.isStale(prices.getT1()),
+                            priceTable)))
+                    .timeout(requestTimeout, Mono.error(() -> new ExternalServiceUnavailableException(
+                            "Timed out waiting for a response from an external service.")));
+        });
+    }
+
+    private Mono<TaxRateSnapshot> getApplicableTaxes() {
+        TaxRateSnapshot lastKnownSnapshot = taxRateProvider.getLastKnownSnapshot();
+
+        if (null != lastKnownSnapshot && !taxRateProvider.isStale(lastKnownSnapshot)) {
+            return Mono.just(lastKnownSnapshot);
+        }
+
+        return reactiveExternalWebApiService.getApplicableTaxes()
+                .<TaxRateSnapshot>handle((applicableTaxes, sink) -> {
+                    try {
+                        sink.next(taxRateProvider.update(applicableTaxes));
+                    } catch (InvalidUserInputException e) {
+                        sink.error(e);
+                    }
+                })
+                .onErrorResume(UpstreamRejectedException.class, e -> null == lastKnownSnapshot
+                        ? Mono.error(e)
+                        : Mono.just(lastKnownSnapshot));
+    }
+
+    private Mono<BasePrices> getBasePrices(List<Passenger> passengers) {
+        AtomicBoolean stale = new AtomicBoolean();
+        long deadlineNanos = System.nanoTime() + requestTimeout.toNanos();
+
+        return Flux.fromIterable(ticketService.requestBasePrices(passengers, deadlineNanos).entrySet())
+                .flatMap(request -> getBasePrice(request.getKey(), request.getValue(), stale)
+                        .map(basePrice -> new AbstractMap.SimpleImmutableEntry<>(
+                                request.getKey(), TicketService.checkBasePrice(request.getKey(), basePrice))))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .map(basePrices -> new BasePrices(basePrices, stale.get()));
+    }
+
+    private Mono<Double> getBasePrice(String destination, CompletableFuture<Double> request, AtomicBoolean stale) {
+        return Mono.fromFuture(request)
+                .onErrorResume(UpstreamRejectedException.class, e -> {
+                    Double lastKnownBasePrice = basePriceCache.getLastKnown(destination);
+
+                    if (null == lastKnownBasePrice) {
+                        return Mono.error(e);
+                    }
+
+                    stale.set(true);
+                    return Mono.just(lastKnownBasePrice);
+                });
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.janissl.draftticket.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.Ticket;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Prices draft tickets of any size in bounded memory.
+ * <p>
+ * Passengers are read one at a time, either from a JSON array or from newline-delimited JSON objects, and priced
+ * in chunks of {@code pricing.stream.chunkSize}: the base prices of a chunk are looked up together, its tickets
+ * are priced and then written out, one JSON object per line, before the next chunk is read. The last line holds
+ * the total price of all tickets. Each chunk has {@code pricing.request.timeout} to get its base prices.
+ */
+@Service
+public class StreamingPriceService {
+    private final TicketService ticketService;
+    private final TaxRateProvider taxRateProvider;
+    private final Executor upstreamExecutor;
+    private final Duration requestTimeout;
+    private final int chunkSize;
+
+    public StreamingPriceService(TicketService ticketService, TaxRateProvider taxRateProvider,
+                                 @Qualifier("upstreamExecutor") Executor upstreamExecutor,
+                                 @Value("${pricing.request.timeout:5s}") Duration requestTimeout,
+                                 @Value("${pricing.stream.chunkSize:256}") int chunkSize) {
+        this.ticketService = ticketService;
+        this.taxRateProvider = taxRateProvider;
+        this.upstreamExecutor = upstreamExecutor;
+        this.requestTimeout = requestTimeout;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the passengers from {@code passengers} and writes their tickets and the total price to {@code tickets}.
+     * Both must have a codec. Nothing of a chunk is written if any of its passengers fails.
+     */
+    public void streamDraftPrice(JsonParser passengers, JsonGenerator tickets)
+            throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        CompletableFuture<TaxRateSnapshot> taxRequest = taxRateProvider.getSnapshotAsync(upstreamExecutor);
+        tickets.setRootValueSeparator(null);
+        DraftPriceStream stream = new DraftPriceStream(tickets);
+        List<Passenger> chunk = new ArrayList<>(chunkSize);
+
+        try {
+            JsonToken token = passengers.nextToken();
+            boolean array = JsonToken.START_ARRAY == token;
+
+            if (array) {
+                token = passengers.nextToken();
+            }
+
+            while (null != token && !(array && JsonToken.END_ARRAY == token)) {
+                if (JsonToken.START_OBJECT != token) {
+                    throw new InvalidUserInputException("Passengers must be sent as JSON objects.");
+                }
+
+                chunk.add(passengers.readValueAs(Passenger.class));
+
+                if (chunk.size() == chunkSize) {
+                    stream.write(chunk, taxRequest);
+                    chunk.clear();
+                }
+
+                token = passengers.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidUserInputException(String.format(
+                    "Malformed passenger data. Reason: %s", e.getOriginalMessage()));
+        }
+
+        if (!chunk.isEmpty()) {
+            stream.write(chunk, taxRequest);
+        }
+
+        stream.writeTotalPrice();
+    }
+
+    private final class DraftPriceStream {
+        private final JsonGenerator tickets;
+        private TaxRateSnapshot applicableTaxes;
+        private long totalPriceInMinorUnits;
+        private int writtenPassengers;
+        private boolean empty = true;
+        private boolean stale;
+
+        private DraftPriceStream(JsonGenerator tickets) {
+            this.tickets = tickets;
+        }
+
+        private void write(List<Passenger> passengers, CompletableFuture<TaxRateSnapshot> taxRequest)
+                throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+            long deadlineNanos = System.nanoTime() + requestTimeout.toNanos();
+            ticketService.validatePassengerData(passengers, writtenPassengers);
+
+            if (null == applicableTaxes) {
+                applicableTaxes = UpstreamFutures.await(taxRequest, deadlineNanos);
+                stale = taxRateProvider.isStale(applicableTaxes);
+            }
+
+            BasePrices basePrices = ticketService.awaitBasePrices(
+                    ticketService.requestBasePrices(passengers, deadlineNanos), deadlineNanos);
+            List<Ticket> chunkTickets = new ArrayList<>(2 * passengers.size());
+            long chunkPriceInMinorUnits = 0L;
+
+            for (Passenger passenger: passengers) {
+                List<Ticket> passengerTickets = TicketService.generateTicketsForPassenger(
+                        basePrices.get(passenger.getDestination()), passenger);
+                chunkPriceInMinorUnits += PricingKernel.priceTickets(passengerTickets, applicableTaxes);
+                chunkTickets.addAll(passengerTickets);
+            }
+
+            for (Ticket ticket: chunkTickets) {
+                tickets.writeObject(ticket);
+                tickets.writeRaw('\n');
+            }
+
+            tickets.flush();
+            totalPriceInMinorUnits += chunkPriceInMinorUnits;
+            writtenPassengers += passengers.size();
+            empty = false;
+            stale |= basePrices.isStale();
+        }
+
+        private void writeTotalPrice() throws IOException {
+            tickets.writeStartObject();
+            tickets.writeNumberField("totalPrice", empty ? BigDecimal.ZERO : BigDecimal.valueOf(totalPriceInMinorUnits, 2));
+
+            if (stale) {
+                tickets.writeBooleanField("stale", true);
+            }
+
+            tickets.writeEndObject();
+            tickets.writeRaw('\n');
+            tickets.flush();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link TaxRateSnapshot} and refreshes it on a schedule.
+ * <p>
+ * A failed refresh keeps the last known good snapshot in place. Only when that snapshot is older than
+ * the configured maximum staleness will a request try the taxes service itself and see its failure.
+ * If that call is rejected by the circuit breaker of the taxes service, the last known snapshot is
+ * returned however old it is; callers can tell by {@link #isStale(TaxRateSnapshot)}. Requests finding the
+ * snapshot stale at the same time share a single refresh, so that an outage of the taxes service does not
+ * get a call from every request.
+ */
+@Component
+public class TaxRateProvider {
+    private static final Logger logger = LoggerFactory.getLogger(TaxRateProvider.class);
+
+    private final ExternalWebApiService externalWebApiService;
+    private final Duration maxStaleness;
+    private final Clock clock;
+    private final AtomicReference<TaxRateSnapshot> currentSnapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<TaxRateSnapshot>> pendingRefresh = new AtomicReference<>();
+
+    @Autowired
+    public TaxRateProvider(ExternalWebApiService externalWebApiService,
+                           @Value("${taxes.snapshot.maxStaleness:PT15M}") Duration maxStaleness) {
+        this(externalWebApiService, maxStaleness, Clock.systemUTC());
+    }
+
+    TaxRateProvider(ExternalWebApiService externalWebApiService, Duration maxStaleness, Clock clock) {
+        this.externalWebApiService = externalWebApiService;
+        this.maxStaleness = maxStaleness;
+        this.clock = clock;
+    }
+
+    public TaxRateSnapshot getSnapshot() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        TaxRateSnapshot snapshot = currentSnapshot.get();
+
+        if (null == snapshot || isStale(snapshot)) {
+            try {
+                snapshot = refreshOnce(snapshot, Runnable::run).join();
+            } catch (CompletionException e) {
+                throw UpstreamFutures.rethrow(e);
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Refreshes a stale snapshot on the executor, unless a refresh is in flight already. A refresh the executor
+     * rejects falls back to the last known snapshot, like one rejected by the circuit breaker of the taxes service.
+     */
+    public CompletableFuture<TaxRateSnapshot> getSnapshotAsync(Executor executor) {
+        TaxRateSnapshot snapshot = currentSnapshot.get();
+
+        if (null == snapshot || isStale(snapshot)) {
+            CompletableFuture<TaxRateSnapshot> refresh = refreshOnce(snapshot, executor);
+
+            if (null != snapshot) {
+                return refresh.exceptionally(e -> {
+                    if (e instanceof UpstreamRejectedException) {
+                        return snapshot;
+                    }
+
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+            }
+
+            return refresh;
+        }
+
+        return CompletableFuture.completedFuture(snapshot);
+    }
+
+    /**
+     * Returns the current snapshot without refreshing it, however old it is, or {@code null} if there is none yet.
+     */
+    public TaxRateSnapshot getLastKnownSnapshot() {
+        return currentSnapshot.get();
+    }
+
+    public TaxRateSnapshot refresh() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return update(externalWebApiService.getApplicableTaxes());
+    }
+
+    /**
+     * Replaces the current snapshot with tax rates fetched by the caller.
+     */
+    public TaxRateSnapshot update(Double[] applicableTaxes) throws InvalidUserInputException {
+        TaxRateSnapshot snapshot = TaxRateSnapshot.of(applicableTaxes, clock.instant());
+        currentSnapshot.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Puts a snapshot saved earlier in place, with its original fetch time, unless taxes have been fetched since.
+     */
+    void restore(TaxRateSnapshot snapshot) {
+        currentSnapshot.compareAndSet(null, snapshot);
+    }
+
+    /**
+     * Returns the refresh in flight, or starts one on the executor. The refresh is forgotten as soon as it has
+     * completed, so that a failed one is tried again by the next request.
+     */
+    private CompletableFuture<TaxRateSnapshot> refreshOnce(TaxRateSnapshot lastKnownSnapshot, Executor executor) {
+        CompletableFuture<TaxRateSnapshot> refresh = new CompletableFuture<>();
+
+        while (!pendingRefresh.compareAndSet(null, refresh)) {
+            CompletableFuture<TaxRateSnapshot> inFlight = pendingRefresh.get();
+
+            if (null != inFlight) {
+                return inFlight;
+            }
+        }
+
+        UpstreamFutures.supplyAsync(() -> refreshOrFallBack(lastKnownSnapshot), executor)
+                .whenComplete((snapshot, e) -> {
+                    pendingRefresh.compareAndSet(refresh, null);
+
+                    if (null == e) {
+                        refresh.complete(snapshot);
+                    } else {
+                        refresh.completeExceptionally(e);
+                    }
+                });
+
+        return refresh;
+    }
+
+    private TaxRateSnapshot refreshOrFallBack(TaxRateSnapshot lastKnownSnapshot)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+        try {
+            return refresh();
+        } catch (UpstreamRejectedException e) {
+            if (null == lastKnownSnapshot) {
+                throw e;
+            }
+
+            return lastKnownSnapshot;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${taxes.snapshot.refreshInterval:PT1M}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (ExternalServiceUnavailableException | InvalidUserInputException e) {
+            logger.warn("Failed to refresh applicable taxes, keeping the last known snapshot. Reason: {}",
+                    e.getMessage());
+        }
+    }
+
+    public boolean isStale(TaxRateSnapshot snapshot) {
+        return Duration.between(snapshot.getFetchedAt(), clock.instant()).compareTo(maxStaleness) > 0;
+    }
+}
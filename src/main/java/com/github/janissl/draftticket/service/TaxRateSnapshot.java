@@ -0,0 +1,63 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable set of applicable tax rates as received from the taxes service at a given point in time.
+ */
+public final class TaxRateSnapshot {
+    private final double[] rates;
+    private final Instant fetchedAt;
+
+    private TaxRateSnapshot(double[] rates, Instant fetchedAt) {
+        this.rates = rates;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public static TaxRateSnapshot of(Double[] applicableTaxes, Instant fetchedAt) throws InvalidUserInputException {
+        double[] rates = new double[applicableTaxes.length];
+
+        for (int i = 0; i < applicableTaxes.length; i++) {
+            if (applicableTaxes[i] < 0.0) {
+                throw new InvalidUserInputException("Tax rates cannot be negative.");
+            }
+
+            rates[i] = applicableTaxes[i];
+        }
+
+        return new TaxRateSnapshot(rates, fetchedAt);
+    }
+
+    /**
+     * Creates a snapshot of tax rates that did not come from the taxes service, e.g. in tests.
+     */
+    public static TaxRateSnapshot of(List<Double> applicableTaxes) throws InvalidUserInputException {
+        return of(applicableTaxes.toArray(new Double[0]), Instant.now());
+    }
+
+    public int size() {
+        return rates.length;
+    }
+
+    public double getRate(int index) {
+        return rates[index];
+    }
+
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public List<Double> toList() {
+        List<Double> applicableTaxes = new ArrayList<>(rates.length);
+
+        for (double rate: rates) {
+            applicableTaxes.add(rate);
+        }
+
+        return applicableTaxes;
+    }
+}
@@ -1,72 +1,201 @@
 package com.github.janissl.draftticket.service;
 
-import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.UpstreamFutures;
 import com.github.janissl.draftticket.exception.DataUnavailableException;
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidPassengerDataException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import com.github.janissl.draftticket.exception.ValidationError;
 import com.github.janissl.draftticket.model.DraftTicket;
 import com.github.janissl.draftticket.model.Passenger;
 import com.github.janissl.draftticket.model.Ticket;
 import com.github.janissl.draftticket.model.TicketType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class TicketService {
-    private final ExternalWebApiService externalWebApiService;
+    private final BasePriceCache basePriceCache;
+    private final BasePriceBatcher basePriceBatcher;
+    private final Duration requestTimeout;
+    private final boolean failFastValidation;
 
     @Autowired
-    public TicketService(ExternalWebApiService externalWebApiService) {
-        this.externalWebApiService = externalWebApiService;
+    public TicketService(BasePriceCache basePriceCache, BasePriceBatcher basePriceBatcher,
+                         @Value("${pricing.request.timeout:5s}") Duration requestTimeout,
+                         @Value("${pricing.validation.failFast:false}") boolean failFastValidation) {
+        this.basePriceCache = basePriceCache;
+        this.basePriceBatcher = basePriceBatcher;
+        this.requestTimeout = requestTimeout;
+        this.failFastValidation = failFastValidation;
     }
 
-    private void validatePassengerData(List<Passenger> passengers) throws InvalidUserInputException {
-        List<String> dataValidationMessages = new ArrayList<>();
+    TicketService(BasePriceCache basePriceCache, BasePriceBatcher basePriceBatcher, Duration requestTimeout) {
+        this(basePriceCache, basePriceBatcher, requestTimeout, false);
+    }
 
-        for (Passenger passenger: passengers) {
-            if (null == passenger.getPassengerType()) {
-                dataValidationMessages.add("No passenger type received from the client.");
+    /**
+     * Validates all passengers in a single pass, without allocating anything unless a passenger is invalid.
+     * With {@code pricing.validation.failFast} only the first error found is reported, otherwise all of them.
+     */
+    void validatePassengerData(List<Passenger> passengers) throws InvalidPassengerDataException {
+        validatePassengerData(passengers, 0, failFastValidation, false);
+    }
+
+    /**
+     * Validates passengers that are part of a longer list, starting at {@code baseIndex}, so that errors are
+     * reported with the indexes of the whole list.
+     */
+    void validatePassengerData(List<Passenger> passengers, int baseIndex) throws InvalidPassengerDataException {
+        validatePassengerData(passengers, baseIndex, failFastValidation, false);
+    }
+
+    /**
+     * Validates passengers whose tickets are aggregated, which allows passengers without luggage.
+     */
+    void validateAggregatedPassengerData(List<Passenger> passengers) throws InvalidPassengerDataException {
+        validatePassengerData(passengers, 0, failFastValidation, true);
+    }
+
+    static void validatePassengerData(List<Passenger> passengers, int baseIndex, boolean failFast)
+            throws InvalidPassengerDataException {
+        validatePassengerData(passengers, baseIndex, failFast, false);
+    }
+
+    static void validatePassengerData(List<Passenger> passengers, int baseIndex, boolean failFast, boolean aggregate)
+            throws InvalidPassengerDataException {
+        int[] passengerIndexes = null;
+        int[] errors = null;
+        int size = 0;
+
+        for (int i = 0; i < passengers.size(); i++) {
+            int passengerErrors = getValidationErrors(passengers.get(i), aggregate);
+
+            if (0 == passengerErrors) {
+                continue;
             }
 
-            if (null == passenger.getItemsOfLuggage()) {
-                dataValidationMessages.add("No number of luggage items received from the client.");
-            } else if (passenger.getItemsOfLuggage() < 0) {
-                dataValidationMessages.add("Number of luggage items cannot be negative.");
+            if (failFast) {
+                throw new InvalidPassengerDataException(new int[] {baseIndex + i},
+                        new int[] {passengerErrors & -passengerErrors}, 1);
             }
 
-            if (null == passenger.getDestination()) {
-                dataValidationMessages.add("No destination received from the client.");
+            if (null == errors) {
+                passengerIndexes = new int[Math.min(passengers.size() - i, 16)];
+                errors = new int[passengerIndexes.length];
+            } else if (size == errors.length) {
+                passengerIndexes = Arrays.copyOf(passengerIndexes, 2 * size);
+                errors = Arrays.copyOf(errors, 2 * size);
             }
+
+            passengerIndexes[size] = baseIndex + i;
+            errors[size++] = passengerErrors;
         }
 
-        if (!dataValidationMessages.isEmpty()) {
-            throw new InvalidUserInputException(String.join(" ", dataValidationMessages));
+        if (0 < size) {
+            throw new InvalidPassengerDataException(passengerIndexes, errors, size);
         }
     }
 
-    public Double getBasePriceForDestination(String destination, Map<String, Double> basePriceCache)
-            throws ExternalServiceUnavailableException, InvalidUserInputException {
+    /**
+     * Returns the errors of a passenger as a set of {@link ValidationError#mask()} bits, or 0 if it is valid.
+     * Unless the tickets are aggregated, an otherwise valid passenger must also have luggage, as every passenger
+     * gets a luggage ticket.
+     */
+    static int getValidationErrors(Passenger passenger, boolean aggregate) {
+        int errors = 0;
+
+        if (null == passenger.getPassengerType()) {
+            errors |= ValidationError.MISSING_PASSENGER_TYPE.mask();
+        }
+
+        if (null == passenger.getItemsOfLuggage()) {
+            errors |= ValidationError.MISSING_ITEMS_OF_LUGGAGE.mask();
+        } else if (passenger.getItemsOfLuggage() < 0) {
+            errors |= ValidationError.NEGATIVE_ITEMS_OF_LUGGAGE.mask();
+        }
 
-        Double basePrice;
+        if (null == passenger.getDestination()) {
+            errors |= ValidationError.MISSING_DESTINATION.mask();
+        }
 
-        if (basePriceCache.containsKey(destination)) {
-            basePrice = basePriceCache.get(destination);
-        } else {
-            basePrice = externalWebApiService.getBasePrice(destination);
-            basePriceCache.put(destination, basePrice);
+        if (0 == errors && !aggregate && 0 == passenger.getItemsOfLuggage()) {
+            errors |= ValidationError.NO_ITEMS_OF_LUGGAGE.mask();
         }
 
+        return errors;
+    }
+
+    /**
+     * Returns the cached base price of the destination if there is one, without looking it up otherwise.
+     */
+    Double peekBasePrice(String destination) {
+        return basePriceCache.peek(destination);
+    }
+
+    static Double checkBasePrice(String destination, Double basePrice) {
         if (basePrice < 0.0) {
-            basePriceCache.put(destination, basePrice);
-            throw new DataUnavailableException(String.format("Destination '%s' is not available.", destination));
+            throw new DataUnavailableException("Destination '%s' is not available.", destination);
         }
 
         return basePrice;
     }
 
-    private static List<Ticket> generateTicketsForPassenger(Double basePrice, Passenger passenger) {
+    /**
+     * Starts a base price lookup for every distinct destination of the passengers at once.
+     * Destinations missing from the cache are fetched together, and together with those of concurrent
+     * requests, through the {@link BasePriceBatcher}, and are not retried past {@code deadlineNanos}.
+     */
+    Map<String, CompletableFuture<Double>> requestBasePrices(List<Passenger> passengers, long deadlineNanos) {
+        Set<String> destinations = new LinkedHashSet<>();
+
+        for (Passenger passenger: passengers) {
+            destinations.add(passenger.getDestination());
+        }
+
+        return basePriceCache.getAll(destinations, misses -> basePriceBatcher.load(misses, deadlineNanos));
+    }
+
+    /**
+     * Waits for the lookups started by {@link #requestBasePrices(List, long)}. Failures are reported in the order
+     * in which the destinations first appear in the passenger list. A lookup rejected by the circuit breaker
+     * of the base price service falls back to the last known base price of the destination, if there is one.
+     */
+    BasePrices awaitBasePrices(Map<String, CompletableFuture<Double>> basePriceRequests, long deadlineNanos)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+
+        Map<String, Double> basePrices = new HashMap<>();
+        boolean stale = false;
+
+        for (Map.Entry<String, CompletableFuture<Double>> request: basePriceRequests.entrySet()) {
+            String destination = request.getKey();
+            Double basePrice;
+
+            try {
+                basePrice = UpstreamFutures.await(request.getValue(), deadlineNanos);
+            } catch (UpstreamRejectedException e) {
+                basePrice = basePriceCache.getLastKnown(destination);
+
+                if (null == basePrice) {
+                    throw e;
+                }
+
+                stale = true;
+            }
+
+            basePrices.put(destination, checkBasePrice(destination, basePrice));
+        }
+
+        return new BasePrices(basePrices, stale);
+    }
+
+    static List<Ticket> generateTicketsForPassenger(Double basePrice, Passenger passenger) {
 
         List<Ticket> tickets = new ArrayList<>(Collections.singletonList(
                 new Ticket(TicketType.valueOf(passenger.getPassengerType().toString()), basePrice)));
@@ -77,22 +206,36 @@ public class TicketService {
         return tickets;
     }
 
-    protected List<Ticket> generateTicketsForAllPassengers(List<Passenger> passengers)
-            throws ExternalServiceUnavailableException, InvalidUserInputException {
-
+    List<Ticket> generateTicketsForAllPassengers(List<Passenger> passengers, BasePrices basePrices) {
         List<Ticket> tickets = new ArrayList<>();
-        Map<String, Double> basePriceCache = new HashMap<>();
 
         for (Passenger passenger: passengers) {
-            String destination = passenger.getDestination();
-            Double basePrice = getBasePriceForDestination(destination, basePriceCache);
+            Double basePrice = basePrices.get(passenger.getDestination());
             tickets.addAll(TicketService.generateTicketsForPassenger(basePrice, passenger));
         }
 
         return tickets;
     }
 
-    public DraftTicket createDraftTicket(List<Passenger> passengers, List<Double> applicableTaxes)
+    /**
+     * Generates the tickets of all passengers, fetching their base prices within the request timeout. Only used
+     * through {@link #createDraftTicket(List, List)}.
+     */
+    List<Ticket> generateTicketsForAllPassengers(List<Passenger> passengers)
+            throws ExternalServiceUnavailableException, InvalidUserInputException {
+
+        long deadlineNanos = System.nanoTime() + requestTimeout.toNanos();
+        BasePrices basePrices = awaitBasePrices(requestBasePrices(passengers, deadlineNanos), deadlineNanos);
+
+        return generateTicketsForAllPassengers(passengers, basePrices);
+    }
+
+    /**
+     * Validates the passengers and creates a draft ticket with their tickets and the given taxes, without pricing it.
+     * The services price draft tickets through {@link PricingKernel} instead; this is kept for tests and benchmarks
+     * of ticket generation.
+     */
+    DraftTicket createDraftTicket(List<Passenger> passengers, List<Double> applicableTaxes)
             throws ExternalServiceUnavailableException, DataUnavailableException, InvalidUserInputException {
 
         validatePassengerData(passengers);
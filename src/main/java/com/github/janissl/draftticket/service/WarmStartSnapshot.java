@@ -0,0 +1,235 @@
+package com.github.janissl.draftticket.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the cached base prices and the tax snapshot to a local file and restores them on startup, so that
+ * a restarted instance does not fetch its whole working set from the external services at once.
+ * <p>
+ * The file is written every {@code warmStart.snapshot.interval} and on shutdown, to a temporary file that then
+ * replaces the previous one. It is read through a memory mapping while the application context starts, i.e.
+ * before the server accepts any request; a file of another format or version, or with a wrong checksum, is
+ * ignored. Restored base prices only live for what is left of their time to live, and the restored tax snapshot
+ * keeps its original fetch time, so neither is used for longer than if the instance had kept running.
+ * <p>
+ * Nothing is saved or restored unless {@code warmStart.snapshot.path} is set.
+ */
+@Component
+public class WarmStartSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(WarmStartSnapshot.class);
+
+    /**
+     * "DTPS", followed by the version, the length of the payload and its CRC32.
+     */
+    private static final int MAGIC = 0x44545053;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int NO_TAXES = -1;
+
+    private final BasePriceCache basePriceCache;
+    private final TaxRateProvider taxRateProvider;
+    private final Path path;
+    private final Clock clock;
+
+    @Autowired
+    public WarmStartSnapshot(BasePriceCache basePriceCache, TaxRateProvider taxRateProvider,
+                             @Value("${warmStart.snapshot.path:}") String path) {
+        this(basePriceCache, taxRateProvider, path.isEmpty() ? null : Paths.get(path), Clock.systemUTC());
+    }
+
+    WarmStartSnapshot(BasePriceCache basePriceCache, TaxRateProvider taxRateProvider, Path path, Clock clock) {
+        this.basePriceCache = basePriceCache;
+        this.taxRateProvider = taxRateProvider;
+        this.path = path;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (null == path || !Files.exists(path)) {
+            return;
+        }
+
+        try {
+            read();
+        } catch (IOException e) {
+            logger.warn("Ignoring the warm start snapshot {}. Reason: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${warmStart.snapshot.interval:PT1M}",
+            initialDelayString = "${warmStart.snapshot.interval:PT1M}")
+    public void save() {
+        if (null == path) {
+            return;
+        }
+
+        try {
+            write();
+        } catch (IOException e) {
+            logger.warn("Failed to save the warm start snapshot {}. Reason: {}", path, e.getMessage());
+        }
+    }
+
+    private void read() throws IOException {
+        ByteBuffer payload;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected file size.");
+            }
+
+            ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+
+            if (MAGIC != snapshot.getInt()) {
+                throw new IOException("Not a warm start snapshot.");
+            }
+
+            int version = snapshot.getInt();
+
+            if (VERSION != version) {
+                throw new IOException(String.format("Unsupported version %d.", version));
+            }
+
+            int length = snapshot.getInt();
+            int checksum = snapshot.getInt();
+
+            if (length != snapshot.remaining()) {
+                throw new IOException("The file has been truncated.");
+            }
+
+            payload = snapshot.slice();
+
+            if (checksum != checksum(payload.duplicate())) {
+                throw new IOException("Checksum mismatch.");
+            }
+        }
+
+        try {
+            restore(payload);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed snapshot.", e);
+        }
+    }
+
+    private void restore(ByteBuffer payload) throws IOException {
+        Instant savedAt = Instant.ofEpochMilli(payload.getLong());
+        Instant taxesFetchedAt = Instant.ofEpochMilli(payload.getLong());
+        int numberOfTaxRates = payload.getInt();
+        Double[] taxRates = NO_TAXES == numberOfTaxRates ? null : new Double[numberOfTaxRates];
+
+        for (int i = 0; i < numberOfTaxRates; i++) {
+            taxRates[i] = payload.getDouble();
+        }
+
+        int numberOfBasePrices = payload.getInt();
+        Map<String, Double> basePrices = new HashMap<>();
+
+        for (int i = 0; i < numberOfBasePrices; i++) {
+            byte[] destination = new byte[Short.toUnsignedInt(payload.getShort())];
+            payload.get(destination);
+            basePrices.put(new String(destination, StandardCharsets.UTF_8), payload.getDouble());
+        }
+
+        Duration age = Duration.between(savedAt, clock.instant());
+        basePriceCache.restore(basePrices, age.isNegative() ? Duration.ZERO : age);
+
+        if (null != taxRates) {
+            taxRateProvider.restore(TaxRateSnapshot.of(taxRates, taxesFetchedAt));
+        }
+
+        logger.info("Restored {} base prices and {} taxes from the warm start snapshot saved at {}.",
+                basePrices.size(), null == taxRates ? "no" : "the", savedAt);
+    }
+
+    private void write() throws IOException {
+        TaxRateSnapshot taxes = taxRateProvider.getLastKnownSnapshot();
+        List<byte[]> destinations = new ArrayList<>();
+        List<Double> basePrices = new ArrayList<>();
+        int length = 24 + (null == taxes ? 0 : 8 * taxes.size());
+
+        for (Map.Entry<String, Double> basePrice: basePriceCache.getCachedBasePrices().entrySet()) {
+            byte[] destination = basePrice.getKey().getBytes(StandardCharsets.UTF_8);
+
+            if (destination.length <= 0xFFFF) {
+                destinations.add(destination);
+                basePrices.add(basePrice.getValue());
+                length += 10 + destination.length;
+            }
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(HEADER_SIZE + length);
+        snapshot.position(HEADER_SIZE);
+        snapshot.putLong(clock.millis());
+        snapshot.putLong(null == taxes ? 0L : taxes.getFetchedAt().toEpochMilli());
+        snapshot.putInt(null == taxes ? NO_TAXES : taxes.size());
+
+        for (int i = 0; null != taxes && i < taxes.size(); i++) {
+            snapshot.putDouble(taxes.getRate(i));
+        }
+
+        snapshot.putInt(destinations.size());
+
+        for (int i = 0; i < destinations.size(); i++) {
+            snapshot.putShort((short) destinations.get(i).length);
+            snapshot.put(destinations.get(i));
+            snapshot.putDouble(basePrices.get(i));
+        }
+
+        snapshot.flip();
+        snapshot.position(HEADER_SIZE);
+        int checksum = checksum(snapshot.slice());
+        snapshot.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, length).putInt(12, checksum);
+        snapshot.position(0);
+
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+
+        if (null != path.getParent()) {
+            Files.createDirectories(path.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+
+            channel.force(true);
+        }
+
+        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
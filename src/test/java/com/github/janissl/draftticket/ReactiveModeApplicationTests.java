@@ -0,0 +1,12 @@
+package com.github.janissl.draftticket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "pricing.reactive.enabled=true")
+class ReactiveModeApplicationTests {
+
+    @Test
+    void contextLoads() {
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    AtomicLong nanos = new AtomicLong();
+    CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void resetCircuitBreaker() {
+        circuitBreaker = new CircuitBreaker("basePrice", 50.0, 80.0, Duration.ofSeconds(2), 10, 4,
+                Duration.ofSeconds(10), 2, 3, nanos::get);
+    }
+
+    private Double succeed() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        return circuitBreaker.execute(() -> 10.0);
+    }
+
+    private void fail() {
+        assertThrows(ExternalServiceUnavailableException.class, () -> circuitBreaker.execute(() -> {
+            throw new ExternalServiceUnavailableException("Failed to get a base price");
+        }));
+    }
+
+    private void succeedSlowly() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        circuitBreaker.execute(() -> {
+            nanos.addAndGet(Duration.ofSeconds(3).toNanos());
+            return 10.0;
+        });
+    }
+
+    private static boolean awaitRelease(CountDownLatch release) {
+        try {
+            return release.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void open() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        succeed();
+        succeed();
+        fail();
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("The circuit breaker must open once the failure rate reaches its threshold")
+    void testOpensOnFailureRate() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        succeed();
+        succeed();
+        fail();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        Exception exception = assertThrows(UpstreamRejectedException.class, this::succeed);
+        assertEquals("Circuit breaker for the basePrice service is open.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("The circuit breaker must open once the slow call rate reaches its threshold")
+    void testOpensOnSlowCallRate() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        succeed();
+
+        for (int i = 0; i < 4; i++) {
+            succeedSlowly();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Invalid requests must not count as failures of the external service")
+    void testInvalidInputIsNotAFailure() {
+        for (int i = 0; i < 10; i++) {
+            assertThrows(InvalidUserInputException.class, () -> circuitBreaker.execute(() -> {
+                throw new InvalidUserInputException("A malformed URL has occurred");
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Successful probes after the wait duration must close the circuit breaker")
+    void testHalfOpenProbesClose() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        succeed();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        succeed();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("A failed probe must open the circuit breaker again")
+    void testHalfOpenProbeFails() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        open();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertThrows(UpstreamRejectedException.class, this::succeed);
+    }
+
+    @Test
+    @DisplayName("Calls beyond the bulkhead limit must be rejected without calling the external service")
+    void testBulkhead() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        CountDownLatch allCallsStarted = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                callers.submit(() -> circuitBreaker.execute(() -> {
+                    allCallsStarted.countDown();
+                    return awaitRelease(release) ? 10.0 : -1.0;
+                }));
+            }
+
+            assertTrue(allCallsStarted.await(1, TimeUnit.SECONDS));
+
+            Exception exception = assertThrows(UpstreamRejectedException.class, this::succeed);
+            assertEquals("Too many concurrent calls to the basePrice service.", exception.getMessage());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(1, TimeUnit.SECONDS));
+        }
+
+        assertEquals(10.0, succeed());
+    }
+}
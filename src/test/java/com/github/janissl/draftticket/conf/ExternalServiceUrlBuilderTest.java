@@ -67,4 +67,27 @@ class ExternalServiceUrlBuilderTest {
 
         assertEquals(expectedUrl, actualUrl);
     }
+
+    @Test
+    @DisplayName("A destination must be percent-encoded as a path segment")
+    void testEncodedSegment() throws MalformedURLException {
+        ExternalServiceUrlBuilder urlBuilder = new ExternalServiceUrlBuilder("http://localhost:8080//baseprice/", 10);
+
+        assertEquals("http://localhost:8080/baseprice/New%20York", urlBuilder.buildUri("New York").toString());
+        assertEquals("http://localhost:8080/baseprice/S%C3%A3o%20Paulo%3F", urlBuilder.buildUri("S\u00e3o Paulo?").toString());
+    }
+
+    @Test
+    @DisplayName("The URI of a destination must be built only once")
+    void testCachedUri() throws MalformedURLException {
+        ExternalServiceUrlBuilder urlBuilder = new ExternalServiceUrlBuilder("http://localhost:8080/baseprice", 10);
+
+        assertSame(urlBuilder.buildUri("Vilnius"), urlBuilder.buildUri("Vilnius"));
+    }
+
+    @Test
+    @DisplayName("A malformed base URL must be rejected when the template is compiled")
+    void testMalformedBaseUrl() {
+        assertThrows(MalformedURLException.class, () -> new ExternalServiceUrlBuilder("localhost:8080/baseprice", 10));
+    }
 }
@@ -0,0 +1,153 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalWebApiServiceTest {
+    StubUpstreamServer upstream;
+    ExternalWebApiService externalWebApiService;
+
+    @BeforeEach
+    void startUpstream() throws IOException {
+        upstream = new StubUpstreamServer()
+                .handle("/baseprice/", uri -> new StubUpstreamServer.Response(200, "10.0"));
+
+        externalWebApiService = createExternalWebApiService("/baseprice");
+    }
+
+    private ExternalWebApiService createExternalWebApiService(String basePricePath) throws MalformedURLException {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(new RestTemplateResponseErrorHandler());
+        ExternalWebApiService externalWebApiService = new ExternalWebApiService(restTemplate,
+                new ExternalServiceUrlBuilder(upstream.url(basePricePath), 100), new SimpleMeterRegistry(),
+                createCircuitBreaker("basePrice"), createCircuitBreaker("taxes"), createHedger("basePrice"),
+                createHedger("basePrices"), createRetrier("basePrice"), createRetrier("taxes"));
+        ReflectionTestUtils.setField(externalWebApiService, "basePricesUrl", upstream.url("/baseprices"));
+        return externalWebApiService;
+    }
+
+    @AfterEach
+    void stopUpstream() {
+        upstream.close();
+    }
+
+    private static CircuitBreaker createCircuitBreaker(String name) {
+        return new CircuitBreaker(name, 50.0, 80.0, Duration.ofSeconds(2), 10, 4, Duration.ofSeconds(10), 2, 10);
+    }
+
+    private static Hedger createHedger(String name) {
+        return new Hedger(name, new SimpleMeterRegistry(), false, 95.0, Duration.ofMillis(10), 5.0, 200, 20,
+                Runnable::run);
+    }
+
+    private static Retrier createRetrier(String name) {
+        return new Retrier(name, new SimpleMeterRegistry(), 3, Duration.ofMillis(1), Duration.ofMillis(10),
+                Duration.ofSeconds(5), new RetryBudget(new SimpleMeterRegistry(), 10, 0.1));
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    }
+
+    @Test
+    @DisplayName("Base prices of several destinations must be fetched with a single call")
+    void testBulkLookup() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        upstream.handle("/baseprices", uri -> new StubUpstreamServer.Response(200, "{\"Vilnius\": 10.0, \"Riga\": 12.0}"));
+
+        Optional<Map<String, Double>> basePrices =
+                externalWebApiService.getBasePrices(Arrays.asList("Vilnius", "Riga"), deadline());
+
+        assertTrue(basePrices.isPresent());
+        assertEquals(10.0, basePrices.get().get("Vilnius"));
+        assertEquals(12.0, basePrices.get().get("Riga"));
+        assertEquals(1, upstream.getRequests().size());
+        assertEquals("destination=Vilnius&destination=Riga", upstream.getRequests().get(0).getQuery());
+    }
+
+    @Test
+    @DisplayName("Destinations must be encoded as query parameters of a bulk lookup")
+    void testBulkLookupEncoding() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        upstream.handle("/baseprices", uri -> new StubUpstreamServer.Response(200, "{\"New York\": 30.0}"));
+
+        Optional<Map<String, Double>> basePrices =
+                externalWebApiService.getBasePrices(Arrays.asList("New York"), deadline());
+
+        assertEquals(30.0, basePrices.get().get("New York"));
+        assertEquals("destination=New%20York", upstream.getRequests().get(0).getRawQuery());
+    }
+
+    @Test
+    @DisplayName("A base price service without bulk lookups must not be asked for them again")
+    void testBulkLookupUnsupported() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        upstream.handle("/baseprices", uri -> new StubUpstreamServer.Response(404, ""));
+
+        assertFalse(externalWebApiService.getBasePrices(Arrays.asList("Vilnius", "Riga"), deadline()).isPresent());
+        assertFalse(externalWebApiService.isBulkLookupSupported());
+        assertFalse(externalWebApiService.getBasePrices(Arrays.asList("Vilnius", "Riga"), deadline()).isPresent());
+
+        assertEquals(10.0, externalWebApiService.getBasePrice("Vilnius"));
+        assertEquals(2, upstream.getRequests().size());
+    }
+
+    @Test
+    @DisplayName("A base price call failing with a transient status must be retried")
+    void testRetryTransientStatus()
+            throws ExternalServiceUnavailableException, InvalidUserInputException, MalformedURLException {
+        AtomicInteger calls = new AtomicInteger();
+        upstream.handle("/flaky/", uri -> calls.incrementAndGet() == 1
+                ? new StubUpstreamServer.Response(503, "")
+                : new StubUpstreamServer.Response(200, "12.0"));
+        externalWebApiService = createExternalWebApiService("/flaky");
+
+        assertEquals(12.0, externalWebApiService.getBasePrice("Vilnius"));
+        assertEquals(2, upstream.getRequests().size());
+    }
+
+    @Test
+    @DisplayName("A base price call failing with a client error status must not be retried")
+    void testNoRetryClientError() throws MalformedURLException {
+        upstream.handle("/invalid/", uri -> new StubUpstreamServer.Response(400, ""));
+        externalWebApiService = createExternalWebApiService("/invalid");
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> externalWebApiService.getBasePrice("Vilnius"));
+        assertEquals(1, upstream.getRequests().size());
+    }
+
+    @Test
+    @DisplayName("A failing bulk lookup must throw ExternalServiceUnavailableException")
+    void testBulkLookupFailure() {
+        upstream.handle("/baseprices", uri -> new StubUpstreamServer.Response(503, ""));
+
+        assertThrows(
+                ExternalServiceUnavailableException.class,
+                () -> externalWebApiService.getBasePrices(Arrays.asList("Vilnius", "Riga"), deadline()));
+        assertTrue(externalWebApiService.isBulkLookupSupported());
+    }
+
+    @Test
+    @DisplayName("Bulk lookups must not be attempted without a bulk lookup URL")
+    void testBulkLookupNotConfigured() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        ReflectionTestUtils.setField(externalWebApiService, "basePricesUrl", "");
+
+        assertFalse(externalWebApiService.isBulkLookupSupported());
+        assertFalse(externalWebApiService.getBasePrices(Arrays.asList("Vilnius"), deadline()).isPresent());
+        assertTrue(upstream.getRequests().isEmpty());
+    }
+}
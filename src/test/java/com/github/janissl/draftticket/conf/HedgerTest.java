@@ -0,0 +1,174 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgerTest {
+    private static final int MINIMUM_NUMBER_OF_CALLS = 10;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    ExecutorService executor = Executors.newCachedThreadPool();
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger attempts = new AtomicInteger();
+
+    @AfterEach
+    void shutDownExecutor() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private Hedger createHedger(boolean enabled, double budgetPercent) {
+        return new Hedger("basePrice", meterRegistry, enabled, 95.0, Duration.ofMillis(20), budgetPercent, 20,
+                MINIMUM_NUMBER_OF_CALLS, executor);
+    }
+
+    private static void warmUp(Hedger hedger) throws ExternalServiceUnavailableException, InvalidUserInputException {
+        for (int i = 0; i < MINIMUM_NUMBER_OF_CALLS; i++) {
+            hedger.execute(() -> 10.0);
+        }
+    }
+
+    /**
+     * The first attempt waits for the release and answers 10.0, any further attempt answers 20.0 at once.
+     */
+    private Double slowFirstAttempt() throws ExternalServiceUnavailableException {
+        if (attempts.incrementAndGet() > 1) {
+            return 20.0;
+        }
+
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return 10.0;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("upstream.hedges").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("A disabled hedger must run the call on the calling thread")
+    void testDisabled() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = createHedger(false, 100.0);
+        Thread caller = Thread.currentThread();
+
+        assertEquals(10.0, hedger.execute(() -> Thread.currentThread() == caller ? 10.0 : 0.0));
+        assertEquals(Long.MAX_VALUE, hedger.getDelayNanos());
+    }
+
+    @Test
+    @DisplayName("A call must not be hedged before enough calls have succeeded to tell its latency")
+    void testNotHedgedWithoutLatencies() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = createHedger(true, 100.0);
+        releaseAfter(Duration.ofMillis(100));
+
+        assertEquals(10.0, hedger.execute(this::slowFirstAttempt));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("A slow call must be hedged after the delay and the first response must win")
+    void testHedgeWins() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = createHedger(true, 50.0);
+        warmUp(hedger);
+
+        assertEquals(Duration.ofMillis(20).toNanos(), hedger.getDelayNanos());
+        assertEquals(20.0, hedger.execute(this::slowFirstAttempt));
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, count("won"));
+        assertEquals(0.0, count("lost"));
+    }
+
+    @Test
+    @DisplayName("A slow call must not be hedged once the hedging budget is exhausted")
+    void testBudgetExhausted() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = createHedger(true, 5.0);
+        warmUp(hedger);
+        releaseAfter(Duration.ofMillis(100));
+
+        assertEquals(10.0, hedger.execute(this::slowFirstAttempt));
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, count("skipped"));
+        assertEquals(0.0, count("won") + count("lost"));
+    }
+
+    @Test
+    @DisplayName("A hedged call must fail only once both attempts have failed")
+    void testBothAttemptsFail() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = createHedger(true, 50.0);
+        warmUp(hedger);
+        releaseAfter(Duration.ofMillis(100));
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> hedger.execute(() -> {
+            slowFirstAttempt();
+            throw new ExternalServiceUnavailableException("Failed to get a base price");
+        }));
+        assertEquals(2, attempts.get());
+        assertEquals(0.0, count("won"));
+        assertEquals(1.0, count("lost"));
+    }
+
+    @Test
+    @DisplayName("A hedge the executor has no thread for must be skipped")
+    void testHedgeRejected() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        AtomicInteger submissions = new AtomicInteger();
+        Executor saturatedAfterPrimary = command -> {
+            if (submissions.incrementAndGet() > MINIMUM_NUMBER_OF_CALLS + 1) {
+                throw new RejectedExecutionException();
+            }
+
+            executor.execute(command);
+        };
+        Hedger hedger = new Hedger("basePrice", meterRegistry, true, 95.0, Duration.ofMillis(20), 50.0, 20,
+                MINIMUM_NUMBER_OF_CALLS, saturatedAfterPrimary);
+        warmUp(hedger);
+        releaseAfter(Duration.ofMillis(100));
+
+        assertEquals(10.0, hedger.execute(this::slowFirstAttempt));
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, count("skipped"));
+        assertEquals(0.0, count("won") + count("lost"));
+    }
+
+    @Test
+    @DisplayName("A call the executor has no thread for must run on the calling thread")
+    void testCallRejected() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Hedger hedger = new Hedger("basePrice", meterRegistry, true, 95.0, Duration.ofMillis(20), 50.0, 20,
+                MINIMUM_NUMBER_OF_CALLS, command -> {
+                    throw new RejectedExecutionException();
+                });
+        Thread caller = Thread.currentThread();
+
+        assertEquals(10.0, hedger.execute(() -> Thread.currentThread() == caller ? 10.0 : 0.0));
+    }
+
+    private void releaseAfter(Duration delay) {
+        executor.execute(() -> {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            release.countDown();
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import com.github.janissl.draftticket.exception.UpstreamStatusException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetrierTest {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    AtomicInteger attempts = new AtomicInteger();
+
+    private Retrier createRetrier(Duration initialBackoff, Duration deadline, RetryBudget retryBudget) {
+        return new Retrier("basePrice", meterRegistry, 3, initialBackoff, initialBackoff.multipliedBy(4), deadline,
+                retryBudget);
+    }
+
+    private Retrier createRetrier(int maxTokens) {
+        return createRetrier(Duration.ofMillis(1), Duration.ofSeconds(5),
+                new RetryBudget(meterRegistry, maxTokens, 0.1));
+    }
+
+    private static ExternalServiceUnavailableException failure(IOException cause) {
+        return new ExternalServiceUnavailableException("Failed to get a base price for the 'Vilnius' destination.",
+                new ResourceAccessException("I/O error on GET request", cause));
+    }
+
+    private Double failTimes(int failures, ExternalServiceUnavailableException failure)
+            throws ExternalServiceUnavailableException {
+        if (attempts.incrementAndGet() <= failures) {
+            throw failure;
+        }
+
+        return 10.0;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("upstream.retries").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("A call failing with an I/O error must be retried until it succeeds")
+    void testRetryIoError() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Retrier retrier = createRetrier(10);
+        ExternalServiceUnavailableException failure = failure(new SocketTimeoutException("Read timed out"));
+
+        assertEquals(10.0, retrier.execute(() -> failTimes(2, failure)));
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, count("sent"));
+    }
+
+    @Test
+    @DisplayName("A call must not be attempted more than maxAttempts times")
+    void testMaxAttempts() {
+        Retrier retrier = createRetrier(10);
+        ExternalServiceUnavailableException failure = failure(new UpstreamStatusException(503, "Failed"));
+
+        assertSame(failure, assertThrows(ExternalServiceUnavailableException.class,
+                () -> retrier.execute(() -> failTimes(3, failure))));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Only I/O errors and the 502, 503 and 504 statuses must be retried")
+    void testTransientFailures() {
+        assertTrue(Retrier.isTransient(failure(new SocketTimeoutException("Read timed out"))));
+        assertTrue(Retrier.isTransient(failure(new UpstreamStatusException(502, "Failed"))));
+        assertTrue(Retrier.isTransient(failure(new UpstreamStatusException(503, "Failed"))));
+        assertTrue(Retrier.isTransient(failure(new UpstreamStatusException(504, "Failed"))));
+        assertFalse(Retrier.isTransient(failure(new UpstreamStatusException(500, "Failed"))));
+        assertFalse(Retrier.isTransient(failure(new UpstreamStatusException(404, "Failed"))));
+        assertFalse(Retrier.isTransient(failure(new ConnectionPoolTimeoutException("Timeout waiting for connection"))));
+        assertFalse(Retrier.isTransient(new UpstreamRejectedException("Circuit breaker is open.")));
+        assertFalse(Retrier.isTransient(
+                new ExternalServiceUnavailableException("Timed out waiting for a response from an external service.")));
+    }
+
+    @Test
+    @DisplayName("A non-transient failure must not be retried")
+    void testNoRetryOfClientError() {
+        Retrier retrier = createRetrier(10);
+        ExternalServiceUnavailableException failure = failure(new UpstreamStatusException(400, "Failed"));
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> retrier.execute(() -> failTimes(1, failure)));
+        assertEquals(1, attempts.get());
+        assertEquals(0.0, count("sent"));
+    }
+
+    @Test
+    @DisplayName("Retries must stop once the retry budget is exhausted")
+    void testRetryBudget() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Retrier retrier = createRetrier(1);
+        ExternalServiceUnavailableException failure = failure(new UpstreamStatusException(503, "Failed"));
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> retrier.execute(() -> failTimes(3, failure)));
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, count("sent"));
+        assertEquals(1.0, count("overBudget"));
+
+        for (int i = 0; i < 10; i++) {
+            retrier.execute(() -> 10.0);
+        }
+
+        attempts.set(0);
+        assertEquals(10.0, retrier.execute(() -> failTimes(1, failure)));
+        assertEquals(2.0, count("sent"));
+    }
+
+    @Test
+    @DisplayName("A call must not be retried if its backoff would end past the deadline")
+    void testDeadline() {
+        Retrier retrier = createRetrier(Duration.ofSeconds(1), Duration.ofMillis(100),
+                new RetryBudget(meterRegistry, 10, 0.1));
+        ExternalServiceUnavailableException failure = failure(new UpstreamStatusException(503, "Failed"));
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> retrier.execute(() -> failTimes(1, failure)));
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, count("pastDeadline"));
+    }
+
+    @Test
+    @DisplayName("A call must not be retried if its backoff would end past the deadline of the caller")
+    void testCallerDeadline() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Retrier retrier = createRetrier(Duration.ofMillis(100), Duration.ofSeconds(5),
+                new RetryBudget(meterRegistry, 10, 0.1));
+        ExternalServiceUnavailableException failure = failure(new UpstreamStatusException(503, "Failed"));
+        long callerDeadlineNanos = System.nanoTime() + Duration.ofMillis(10).toNanos();
+
+        assertThrows(ExternalServiceUnavailableException.class,
+                () -> retrier.execute(() -> failTimes(1, failure), callerDeadlineNanos));
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, count("pastDeadline"));
+        attempts.set(0);
+        assertEquals(10.0, retrier.execute(() -> failTimes(1, failure), System.nanoTime() + 1_000_000_000L));
+        assertEquals(2, attempts.get());
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.janissl.draftticket.conf;
+
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private static final int CALLERS = 8;
+
+    SingleFlight<String, Double> singleFlight = new SingleFlight<>();
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    AtomicInteger upstreamCalls = new AtomicInteger();
+    CountDownLatch leaderStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdownCallers() {
+        callers.shutdownNow();
+    }
+
+    private List<Future<Double>> submitConcurrentCalls(UpstreamFutures.UpstreamCall<Double> call)
+            throws InterruptedException {
+        List<Future<Double>> results = new ArrayList<>();
+        results.add(callers.submit(() -> singleFlight.execute("Vilnius", call)));
+        assertTrue(leaderStarted.await(1, TimeUnit.SECONDS));
+
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(callers.submit(() -> singleFlight.execute("Vilnius", call)));
+        }
+
+        Thread.sleep(100);
+        release.countDown();
+        return results;
+    }
+
+    @Test
+    @DisplayName("Concurrent calls for the same key must share a single upstream call")
+    void testConcurrentCallsCoalesced() throws InterruptedException, ExecutionException {
+        List<Future<Double>> results = submitConcurrentCalls(() -> {
+            upstreamCalls.incrementAndGet();
+            leaderStarted.countDown();
+            awaitRelease();
+            return 10.0;
+        });
+
+        for (Future<Double> result: results) {
+            assertEquals(10.0, result.get());
+        }
+
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    @DisplayName("All concurrent callers must receive the exception of the shared upstream call")
+    void testConcurrentCallsShareException() throws InterruptedException {
+        List<Future<Double>> results = submitConcurrentCalls(() -> {
+            upstreamCalls.incrementAndGet();
+            leaderStarted.countDown();
+            awaitRelease();
+            throw new ExternalServiceUnavailableException("Failed to get a base price");
+        });
+
+        for (Future<Double> result: results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+            assertTrue(exception.getCause() instanceof ExternalServiceUnavailableException);
+            assertEquals("Failed to get a base price", exception.getCause().getMessage());
+        }
+
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    @DisplayName("A call started after the previous one has completed must reach the upstream again")
+    void testSequentialCallsNotCoalesced() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        singleFlight.execute("Vilnius", () -> (double) upstreamCalls.incrementAndGet());
+        singleFlight.execute("Vilnius", () -> (double) upstreamCalls.incrementAndGet());
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.janissl.draftticket.conf;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A local HTTP server standing in for the external services in tests. Every path answers with the status and JSON
+ * body returned by its handler for the request URI, and the requested URIs are recorded.
+ */
+class StubUpstreamServer implements AutoCloseable {
+    static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final HttpServer server;
+    private final List<URI> requests = new CopyOnWriteArrayList<>();
+
+    StubUpstreamServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+    }
+
+    StubUpstreamServer handle(String path, Function<URI, Response> handler) {
+        server.createContext(path, exchange -> {
+            requests.add(exchange.getRequestURI());
+            Response response = handler.apply(exchange.getRequestURI());
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : body.length);
+
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+
+        return this;
+    }
+
+    String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    List<URI> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.janissl.draftticket.conf;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadsTest {
+    @Test
+    @DisplayName("Tasks must run on named virtual threads on Java 21 or later")
+    void testThreadPerTaskExecutor() throws ExecutionException, InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("upstream-");
+
+        try {
+            String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+            assertTrue(threadName.startsWith("upstream-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Creating virtual threads before Java 21 must fail with IllegalStateException")
+    void testUnsupportedRuntime() {
+        assumeFalse(VirtualThreads.isSupported());
+
+        Exception exception = assertThrows(
+                IllegalStateException.class,
+                () -> VirtualThreads.newThreadPerTaskExecutor("upstream-"));
+
+        assertTrue(exception.getMessage().startsWith("Virtual threads require Java 21 or later"));
+    }
+}
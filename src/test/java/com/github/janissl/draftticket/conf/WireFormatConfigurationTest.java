@@ -0,0 +1,78 @@
+package com.github.janissl.draftticket.conf;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.janissl.draftticket.model.*;
+import com.github.janissl.draftticket.service.PriceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WireFormatConfigurationTest {
+    private static final TypeReference<List<Passenger>> PASSENGER_LIST = new TypeReference<List<Passenger>>() {};
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    WireFormatConfiguration wireFormatConfiguration = new WireFormatConfiguration();
+    ObjectMapper jsonMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @ValueSource(strings = {WireFormatConfiguration.APPLICATION_CBOR, WireFormatConfiguration.APPLICATION_SMILE})
+    @DisplayName("Passengers and draft prices must have the same content in a binary format as in JSON, in fewer bytes")
+    void testRoundTrip(String mediaType) throws IOException {
+        AbstractJackson2HttpMessageConverter converter = createConverter(mediaType);
+        ObjectMapper binaryMapper = converter.getObjectMapper();
+
+        List<Passenger> passengers = Arrays.asList(new Passenger(PassengerType.ADULT, "Vilnius", 2),
+                new Passenger(PassengerType.CHILD, "Vilnius", 1));
+        MockHttpInputMessage request = new MockHttpInputMessage(binaryMapper.writeValueAsBytes(passengers));
+        request.getHeaders().setContentType(MediaType.parseMediaType(mediaType));
+
+        assertTrue(converter.canRead(PASSENGER_LIST.getType(), null, MediaType.parseMediaType(mediaType)));
+        List<?> readPassengers = (List<?>) converter.read(PASSENGER_LIST.getType(), null, request);
+        assertEquals(jsonMapper.writeValueAsString(passengers), jsonMapper.writeValueAsString(readPassengers));
+
+        DraftPrice draftPrice = createDraftPrice();
+        MockHttpOutputMessage response = new MockHttpOutputMessage();
+        converter.write(draftPrice, DraftPrice.class, MediaType.parseMediaType(mediaType), response);
+
+        byte[] json = jsonMapper.writeValueAsBytes(draftPrice);
+        assertEquals(new String(json, StandardCharsets.UTF_8), jsonMapper.writeValueAsString(
+                binaryMapper.readValue(response.getBodyAsBytes(), Map.class)));
+        assertTrue(response.getBodyAsBytes().length < json.length);
+        assertEquals(1L, meterRegistry.get(PriceService.STAGE_TIMER).tag("stage", "serialization").timer().count());
+    }
+
+    private AbstractJackson2HttpMessageConverter createConverter(String mediaType) {
+        return WireFormatConfiguration.APPLICATION_CBOR.equals(mediaType)
+                ? wireFormatConfiguration.getCborHttpMessageConverter(new Jackson2ObjectMapperBuilder(), meterRegistry)
+                : wireFormatConfiguration.getSmileHttpMessageConverter(new Jackson2ObjectMapperBuilder(), meterRegistry);
+    }
+
+    private static DraftPrice createDraftPrice() {
+        Ticket adult = new Ticket(TicketType.ADULT, 10.0);
+        adult.setPrice(new BigDecimal("12.10"));
+        Ticket luggage = new Ticket(TicketType.LUGGAGE, 10.0, 2);
+        luggage.setPrice(new BigDecimal("7.26"));
+
+        DraftPrice draftPrice = new DraftPrice(new DraftTicket(Arrays.asList(adult, luggage), 1936L));
+        draftPrice.setTotalPrice(new BigDecimal("19.36"));
+
+        return draftPrice;
+    }
+}
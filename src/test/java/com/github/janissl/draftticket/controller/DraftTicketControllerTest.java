@@ -0,0 +1,118 @@
+package com.github.janissl.draftticket.controller;
+
+import com.github.janissl.draftticket.exception.DataUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidPassengerDataException;
+import com.github.janissl.draftticket.exception.ValidationError;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.DraftTicket;
+import com.github.janissl.draftticket.service.PriceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class DraftTicketControllerTest {
+    private static final String PASSENGERS =
+            "[{\"passengerType\": \"ADULT\", \"destination\": \"Vilnius\", \"itemsOfLuggage\": 1}]";
+
+    @Mock
+    PriceService priceService;
+
+    MockMvc mockMvc;
+
+    @BeforeEach
+    void setUpMockMvc() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new DraftTicketController(priceService, Duration.ofSeconds(5)))
+                .build();
+    }
+
+    @Test
+    @DisplayName("The draft price must be written once it has been priced asynchronously")
+    void testAsyncDraftPrice() throws Exception {
+        CompletableFuture<DraftPrice> draftPrice = new CompletableFuture<>();
+        Mockito.when(priceService.getDraftPriceAsync(Mockito.anyList())).thenReturn(draftPrice);
+
+        MvcResult result = mockMvc.perform(get("/draftprice").contentType(MediaType.APPLICATION_JSON).content(PASSENGERS))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        DraftPrice pricedDraftPrice = new DraftPrice(new DraftTicket(Collections.emptyList(), 0L));
+        pricedDraftPrice.setTotalPrice(new BigDecimal("15.73"));
+        draftPrice.complete(pricedDraftPrice);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalPrice").value(15.73));
+    }
+
+    @Test
+    @DisplayName("A draft price not priced within the request timeout must be answered with an error body")
+    void testAsyncDraftPriceTimeout() throws Exception {
+        Mockito.when(priceService.getDraftPriceAsync(Mockito.anyList())).thenReturn(new CompletableFuture<>());
+
+        MvcResult result = mockMvc.perform(get("/draftprice").contentType(MediaType.APPLICATION_JSON).content(PASSENGERS))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+
+        for (AsyncListener listener: asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("External Service Unavailable"))
+                .andExpect(jsonPath("$.message").value("Timed out waiting for a response from an external service."));
+    }
+
+    @Test
+    @DisplayName("Invalid passengers must be answered with an error code and index for every error")
+    void testInvalidPassengerErrors() throws Exception {
+        Mockito.when(priceService.getDraftPriceAsync(Mockito.anyList())).thenThrow(
+                new InvalidPassengerDataException(new int[] {17},
+                        new int[] {ValidationError.NEGATIVE_ITEMS_OF_LUGGAGE.mask()}, 1));
+
+        mockMvc.perform(get("/draftprice").contentType(MediaType.APPLICATION_JSON).content(PASSENGERS))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Invalid Input From Client"))
+                .andExpect(jsonPath("$.message").value("Number of luggage items cannot be negative."))
+                .andExpect(jsonPath("$.errors[0].passenger").value(17))
+                .andExpect(jsonPath("$.errors[0].field").value("itemsOfLuggage"))
+                .andExpect(jsonPath("$.errors[0].code").value("NEGATIVE_ITEMS_OF_LUGGAGE"));
+    }
+
+    @Test
+    @DisplayName("An unavailable destination must be answered with the Data Unavailable error body")
+    void testDataUnavailableError() throws Exception {
+        Mockito.when(priceService.getDraftPriceAsync(Mockito.anyList())).thenThrow(
+                new DataUnavailableException("Destination '%s' is not available.", "Vilnius"));
+
+        mockMvc.perform(get("/draftprice").contentType(MediaType.APPLICATION_JSON).content(PASSENGERS))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error").value("Data Unavailable"))
+                .andExpect(jsonPath("$.message").value("Destination 'Vilnius' is not available."));
+    }
+}
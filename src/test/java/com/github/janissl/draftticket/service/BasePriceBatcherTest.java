@@ -0,0 +1,231 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.DataUnavailableException;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class BasePriceBatcherTest {
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    ThreadPoolTaskScheduler taskScheduler;
+
+    @AfterEach
+    void shutdownTaskScheduler() {
+        if (null != taskScheduler) {
+            taskScheduler.shutdown();
+        }
+    }
+
+    private BasePriceBatcher createBatcher(Duration window, int maxSize) {
+        Mockito.lenient().when(externalWebApiService.isBulkLookupSupported()).thenReturn(true);
+
+        if (!window.isZero()) {
+            taskScheduler = new ThreadPoolTaskScheduler();
+            taskScheduler.initialize();
+        }
+
+        return new BasePriceBatcher(externalWebApiService, Runnable::run, taskScheduler, window, maxSize);
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    }
+
+    private static Double await(CompletableFuture<Double> basePrice) throws Exception {
+        return basePrice.get(1, TimeUnit.SECONDS);
+    }
+
+    private static Map<String, Double> basePrices(Object... destinationsAndPrices) {
+        Map<String, Double> basePrices = new HashMap<>();
+
+        for (int i = 0; i < destinationsAndPrices.length; i += 2) {
+            basePrices.put((String) destinationsAndPrices[i], (Double) destinationsAndPrices[i + 1]);
+        }
+
+        return basePrices;
+    }
+
+    @Test
+    @DisplayName("Destinations requested within the batching window must be fetched with a single call")
+    void testBatchingWindow() throws Exception {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ofMillis(50), 50);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenReturn(Optional.of(basePrices("Vilnius", 10.0, "Riga", 12.0, "Tallinn", 14.0)));
+
+        Map<String, CompletableFuture<Double>> first =
+                basePriceBatcher.load(Arrays.asList("Vilnius", "Riga"), deadline());
+        Map<String, CompletableFuture<Double>> second =
+                basePriceBatcher.load(Arrays.asList("Riga", "Tallinn"), deadline());
+
+        assertEquals(10.0, await(first.get("Vilnius")));
+        assertEquals(12.0, await(first.get("Riga")));
+        assertEquals(12.0, await(second.get("Riga")));
+        assertEquals(14.0, await(second.get("Tallinn")));
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrices(Mockito.eq(new LinkedHashSet<>(Arrays.asList("Vilnius", "Riga", "Tallinn"))),
+                        Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("A batch must not be retried past the latest deadline of the requests waiting for it")
+    void testBatchDeadline() throws Exception {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ofMillis(50), 50);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenReturn(Optional.of(basePrices("Vilnius", 10.0, "Riga", 12.0)));
+        long deadlineNanos = deadline();
+
+        basePriceBatcher.load(Arrays.asList("Vilnius"), deadlineNanos + 1_000_000L);
+        Map<String, CompletableFuture<Double>> basePrices = basePriceBatcher.load(Arrays.asList("Riga"), deadlineNanos);
+
+        assertEquals(12.0, await(basePrices.get("Riga")));
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrices(Mockito.anyCollection(), Mockito.eq(deadlineNanos + 1_000_000L));
+    }
+
+    @Test
+    @DisplayName("A batch reaching its maximum size must be fetched right away")
+    void testMaximumBatchSize() throws Exception {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ZERO, 2);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenReturn(Optional.of(basePrices("Vilnius", 10.0, "Riga", 12.0)))
+                .thenReturn(Optional.of(basePrices("Tallinn", 14.0)));
+
+        Map<String, CompletableFuture<Double>> basePrices =
+                basePriceBatcher.load(Arrays.asList("Vilnius", "Riga", "Tallinn"), deadline());
+
+        assertEquals(10.0, await(basePrices.get("Vilnius")));
+        assertEquals(12.0, await(basePrices.get("Riga")));
+        assertEquals(14.0, await(basePrices.get("Tallinn")));
+        Mockito.verify(externalWebApiService, Mockito.times(2))
+                .getBasePrices(Mockito.anyCollection(), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Without bulk lookups every destination must be fetched with a call of its own")
+    void testFallbackToSingleLookups() throws Exception {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ZERO, 50);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenReturn(Optional.empty());
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("Vilnius"), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("Riga"), Mockito.anyLong()))
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get a base price"));
+
+        Map<String, CompletableFuture<Double>> basePrices =
+                basePriceBatcher.load(Arrays.asList("Vilnius", "Riga"), deadline());
+
+        assertEquals(10.0, await(basePrices.get("Vilnius")));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> await(basePrices.get("Riga")));
+        assertTrue(exception.getCause() instanceof ExternalServiceUnavailableException);
+    }
+
+    @Test
+    @DisplayName("Destinations must be fetched one by one without waiting for the window if bulk lookups are not supported")
+    void testNoBatchingWithoutBulkLookups() throws Exception {
+        BasePriceBatcher basePriceBatcher =
+                new BasePriceBatcher(externalWebApiService, Runnable::run, null, Duration.ofSeconds(10), 50);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("Vilnius"), Mockito.anyLong())).thenReturn(10.0);
+
+        Map<String, CompletableFuture<Double>> basePrices = basePriceBatcher.load(Arrays.asList("Vilnius"), deadline());
+
+        assertTrue(basePrices.get("Vilnius").isDone());
+        assertEquals(10.0, await(basePrices.get("Vilnius")));
+        Mockito.verify(externalWebApiService, Mockito.never())
+                .getBasePrices(Mockito.anyCollection(), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("A destination missing from a bulk lookup must be unavailable like with a call of its own")
+    void testMissingDestination() throws Exception {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ZERO, 50);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenReturn(Optional.of(basePrices("Vilnius", 10.0)));
+
+        Map<String, CompletableFuture<Double>> basePrices =
+                basePriceBatcher.load(Arrays.asList("Vilnius", "Riga"), deadline());
+
+        assertEquals(10.0, await(basePrices.get("Vilnius")));
+        Double basePrice = await(basePrices.get("Riga"));
+        assertTrue(basePrice < 0.0);
+        DataUnavailableException exception = assertThrows(DataUnavailableException.class,
+                () -> TicketService.checkBasePrice("Riga", basePrice));
+        assertEquals("Destination 'Riga' is not available.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("A failing bulk lookup must fail every destination of the batch")
+    void testBulkLookupFailure() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        BasePriceBatcher basePriceBatcher = createBatcher(Duration.ZERO, 50);
+        Mockito.when(externalWebApiService.getBasePrices(Mockito.anyCollection(), Mockito.anyLong()))
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get base prices"));
+
+        Map<String, CompletableFuture<Double>> basePrices =
+                basePriceBatcher.load(Arrays.asList("Vilnius", "Riga"), deadline());
+
+        for (CompletableFuture<Double> basePrice: basePrices.values()) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> await(basePrice));
+            assertEquals("Failed to get base prices", exception.getCause().getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("A batch the saturated upstream executor rejects must fail with UpstreamRejectedException")
+    void testSaturatedExecutor() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor upstreamExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+
+        try {
+            upstreamExecutor.execute(() -> awaitRelease(release));
+            upstreamExecutor.execute(() -> awaitRelease(release));
+            Mockito.when(externalWebApiService.isBulkLookupSupported()).thenReturn(true);
+            BasePriceBatcher basePriceBatcher =
+                    new BasePriceBatcher(externalWebApiService, upstreamExecutor, null, Duration.ZERO, 50);
+
+            Map<String, CompletableFuture<Double>> basePrices =
+                    basePriceBatcher.load(Arrays.asList("Vilnius", "Riga"), deadline());
+
+            for (CompletableFuture<Double> basePrice: basePrices.values()) {
+                ExecutionException exception = assertThrows(ExecutionException.class, () -> await(basePrice));
+                assertTrue(exception.getCause() instanceof UpstreamRejectedException);
+            }
+
+            Mockito.verify(externalWebApiService, Mockito.never())
+                    .getBasePrices(Mockito.anyCollection(), Mockito.anyLong());
+        } finally {
+            release.countDown();
+            upstreamExecutor.shutdown();
+            upstreamExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void awaitRelease(CountDownLatch release) {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
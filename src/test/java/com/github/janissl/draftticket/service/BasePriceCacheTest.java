@@ -0,0 +1,151 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+class BasePriceCacheTest {
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    AtomicLong nanos = new AtomicLong();
+    BasePriceCache basePriceCache;
+    String destination;
+
+    @BeforeEach
+    void resetCache() {
+        destination = "Vilnius";
+        nanos.set(0);
+        basePriceCache = new BasePriceCache(externalWebApiService, 100,
+                Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofSeconds(30), nanos::get, Runnable::run);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    @DisplayName("A cached base price must be reused without calling the external service again")
+    void testCachedBasePrice() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(10.0);
+
+        assertEquals(10.0, basePriceCache.get(destination));
+        assertEquals(10.0, basePriceCache.get(destination));
+
+        Mockito.verify(externalWebApiService, Mockito.times(1)).getBasePrice(destination);
+    }
+
+    @Test
+    @DisplayName("A base price older than the refresh interval must be served while it is reloaded")
+    void testRefreshAhead() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(10.0, 12.0);
+
+        assertEquals(10.0, basePriceCache.get(destination));
+        advance(Duration.ofMinutes(6));
+
+        assertEquals(10.0, basePriceCache.get(destination));
+        assertEquals(12.0, basePriceCache.get(destination));
+        Mockito.verify(externalWebApiService, Mockito.times(2)).getBasePrice(destination);
+    }
+
+    @Test
+    @DisplayName("A negative base price must expire sooner than a regular one")
+    void testNegativeBasePriceExpiry() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        destination = "MiddleOfNowhere";
+        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(-1.0, 15.0);
+
+        assertEquals(-1.0, basePriceCache.get(destination));
+        advance(Duration.ofSeconds(31));
+
+        assertEquals(15.0, basePriceCache.get(destination));
+        Mockito.verify(externalWebApiService, Mockito.times(2)).getBasePrice(destination);
+    }
+
+    @Test
+    @DisplayName("A failure of the external service must be rethrown as ExternalServiceUnavailableException")
+    void testExternalServiceFailure() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(destination))
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get a base price"));
+
+        Exception exception = assertThrows(
+                ExternalServiceUnavailableException.class,
+                () -> basePriceCache.get(destination));
+
+        assertEquals("Failed to get a base price", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("A failed lookup must not be cached")
+    void testFailureNotCached() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(destination))
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get a base price"))
+                .thenReturn(10.0);
+
+        assertThrows(ExternalServiceUnavailableException.class, () -> basePriceCache.get(destination));
+
+        assertEquals(10.0, basePriceCache.get(destination));
+        assertEquals(10.0, basePriceCache.getLastKnown(destination));
+    }
+
+    @Test
+    @DisplayName("Only the destinations neither cached nor being loaded must be handed to the loader")
+    void testGetAll() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(10.0);
+        basePriceCache.get(destination);
+        List<Set<String>> loads = new ArrayList<>();
+        CompletableFuture<Double> rigaBasePrice = new CompletableFuture<>();
+
+        Map<String, CompletableFuture<Double>> first = basePriceCache.getAll(Arrays.asList("Vilnius", "Riga"),
+                destinations -> {
+                    loads.add(new HashSet<>(destinations));
+                    return Collections.singletonMap("Riga", rigaBasePrice);
+                });
+        Map<String, CompletableFuture<Double>> second = basePriceCache.getAll(Arrays.asList("Riga", "Riga"),
+                destinations -> {
+                    loads.add(new HashSet<>(destinations));
+                    return Collections.emptyMap();
+                });
+        rigaBasePrice.complete(12.0);
+
+        assertEquals(Collections.singletonList(Collections.singleton("Riga")), loads);
+        assertEquals(10.0, first.get("Vilnius").join());
+        assertEquals(12.0, first.get("Riga").join());
+        assertEquals(12.0, second.get("Riga").join());
+        assertEquals(12.0, basePriceCache.getIfPresent("Riga"));
+        assertEquals(12.0, basePriceCache.getLastKnown("Riga"));
+    }
+
+    @Test
+    @DisplayName("Cache lookups must be counted as hits and misses")
+    void testHitAndMissCounters() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        basePriceCache.bindTo(meterRegistry);
+        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(10.0);
+
+        assertEquals(null, basePriceCache.getIfPresent(destination));
+        assertEquals(10.0, basePriceCache.get(destination));
+        assertEquals(10.0, basePriceCache.getIfPresent(destination));
+        assertEquals(10.0, basePriceCache.get(destination));
+
+        assertEquals(2.0, meterRegistry.get("basePrice.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("basePrice.cache.requests").tag("result", "miss").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("basePrice.cache.size").gauge().value());
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DraftPriceMemoTest {
+    DraftPriceMemo draftPriceMemo;
+    TaxRateSnapshot applicableTaxes;
+    Map<String, Double> basePrices = new HashMap<>();
+    List<Passenger> passengers;
+
+    @BeforeEach
+    void resetMemo() throws InvalidUserInputException {
+        draftPriceMemo = new DraftPriceMemo(new SimpleMeterRegistry(), DataSize.ofMegabytes(1), 3);
+        applicableTaxes = TaxRateSnapshot.of(Collections.singletonList(21.0));
+        basePrices.put("Vilnius", 10.0);
+        basePrices.put("Riga", 12.0);
+        passengers = new ArrayList<>(Arrays.asList(
+                new Passenger(PassengerType.ADULT, "Vilnius", 1),
+                new Passenger(PassengerType.ADULT, "Riga", 1),
+                new Passenger(PassengerType.ADULT, "Vilnius", 1)));
+    }
+
+    private DraftPrice remember() throws InvalidUserInputException {
+        List<Ticket> tickets = new ArrayList<>();
+
+        for (Passenger passenger: passengers) {
+            tickets.addAll(TicketService.generateTicketsForPassenger(basePrices.get(passenger.getDestination()), passenger));
+        }
+
+        DraftPrice draftPrice = PriceService.priceDraftTicket(tickets, applicableTaxes, false);
+        draftPriceMemo.put(passengers, applicableTaxes, basePrices::get, draftPrice);
+        return draftPrice;
+    }
+
+    private DraftPrice lookUp() {
+        return draftPriceMemo.get(passengers, applicableTaxes, basePrices::get);
+    }
+
+    @Test
+    @DisplayName("The same passengers in another order must be found with their tickets in the new order")
+    void testOrderIndependentCart() throws InvalidUserInputException {
+        DraftPrice draftPrice = remember();
+        Collections.swap(passengers, 0, 1);
+
+        DraftPrice memoisedDraftPrice = lookUp();
+
+        assertEquals(BigDecimal.valueOf(50.34), memoisedDraftPrice.getTotalPrice());
+        assertEquals(draftPrice.getTotalPrice(), memoisedDraftPrice.getTotalPrice());
+        assertEquals(draftPrice.getTickets().get(2), memoisedDraftPrice.getTickets().get(0));
+        assertEquals(draftPrice.getTickets().get(0), memoisedDraftPrice.getTickets().get(2));
+        assertFalse(memoisedDraftPrice.isStale());
+    }
+
+    @Test
+    @DisplayName("A different multiset of passengers must not be found")
+    void testDifferentCart() throws InvalidUserInputException {
+        remember();
+        passengers.set(2, new Passenger(PassengerType.ADULT, "Riga", 1));
+
+        assertNull(lookUp());
+    }
+
+    @Test
+    @DisplayName("A changed base price must not find draft prices priced with the previous one")
+    void testChangedBasePrice() throws InvalidUserInputException {
+        remember();
+        basePrices.put("Riga", 13.0);
+
+        assertNull(lookUp());
+    }
+
+    @Test
+    @DisplayName("Changed tax rates must not find draft prices priced with the previous ones")
+    void testChangedTaxRates() throws InvalidUserInputException {
+        remember();
+        applicableTaxes = TaxRateSnapshot.of(Arrays.asList(21.0, 5.0));
+
+        assertNull(lookUp());
+    }
+
+    @Test
+    @DisplayName("Nothing must be found while a base price is not known")
+    void testUnknownBasePrice() throws InvalidUserInputException {
+        remember();
+        basePrices.remove("Vilnius");
+
+        assertNull(lookUp());
+    }
+
+    @Test
+    @DisplayName("Carts above the maximum number of passengers must not be remembered")
+    void testMaxPassengers() throws InvalidUserInputException {
+        passengers.add(new Passenger(PassengerType.CHILD, "Riga", 1));
+        remember();
+
+        assertNull(lookUp());
+        assertFalse(draftPriceMemo.isMemoisable(passengers));
+        assertFalse(draftPriceMemo.isMemoisable(Collections.emptyList()));
+    }
+
+    @Test
+    @DisplayName("Every hit must get tickets of its own")
+    void testTicketsNotShared() throws InvalidUserInputException {
+        DraftPrice draftPrice = remember();
+        draftPrice.getTickets().get(0).setPrice(BigDecimal.ZERO);
+
+        DraftPrice firstHit = lookUp();
+        firstHit.getTickets().get(0).setPrice(BigDecimal.ONE);
+        DraftPrice secondHit = lookUp();
+
+        assertNotSame(firstHit.getTickets().get(0), secondHit.getTickets().get(0));
+        assertNotSame(firstHit.getTickets().get(0), firstHit.getTickets().get(4));
+        assertEquals(new BigDecimal("12.10"), secondHit.getTickets().get(0).getPrice());
+        assertEquals(firstHit.getTickets().get(4).getPrice(), secondHit.getTickets().get(0).getPrice());
+    }
+}
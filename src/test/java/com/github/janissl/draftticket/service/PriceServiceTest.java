@@ -4,22 +4,35 @@ import com.github.janissl.draftticket.conf.ExternalWebApiService;
 import com.github.janissl.draftticket.exception.DataUnavailableException;
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
 import com.github.janissl.draftticket.model.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 class PriceServiceTest {
@@ -27,17 +40,22 @@ class PriceServiceTest {
     @Mock
     ExternalWebApiService externalWebApiService;
 
-    @InjectMocks
     TicketService ticketService;
 
-    @InjectMocks
     PriceService priceService;
 
+    SimpleMeterRegistry meterRegistry;
+
     String destination;
     List<Passenger> passengerList = new ArrayList<>();
 
     @BeforeEach
     void resetPassengerList() {
+        meterRegistry = new SimpleMeterRegistry();
+        ticketService = TicketServices.createTicketService(externalWebApiService, Runnable::run, Duration.ofSeconds(5));
+        priceService = new PriceService(ticketService, new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(meterRegistry, DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                Runnable::run, Duration.ofSeconds(5), meterRegistry);
         destination = "Vilnius";
         passengerList.clear();
     }
@@ -227,11 +245,261 @@ class PriceServiceTest {
         double basePrice = 10.0;
         Double[] applicableTaxes = {21.0};
 
-        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(basePrice);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenReturn(basePrice);
         Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(applicableTaxes);
 
         DraftTicket draftTicket = ticketService.createDraftTicket(passengerList, priceService.getApplicableTaxes());
 
         assertEquals(BigDecimal.valueOf(29.04), PriceService.getTotalPriceOfDraftTicket(draftTicket.getTickets()));
     }
+
+    @Test
+    @DisplayName("Base prices of distinct destinations must be fetched concurrently")
+    void testConcurrentBasePriceLookups()
+            throws ExternalServiceUnavailableException, DataUnavailableException, InvalidUserInputException {
+        ExecutorService upstreamExecutor = Executors.newFixedThreadPool(4);
+        ticketService =
+                TicketServices.createTicketService(externalWebApiService, upstreamExecutor, Duration.ofSeconds(5));
+        priceService = new PriceService(ticketService, new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(meterRegistry, DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                upstreamExecutor, Duration.ofSeconds(5), meterRegistry);
+
+        CountDownLatch allLookupsStarted = new CountDownLatch(2);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.anyString(), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+            allLookupsStarted.countDown();
+            return allLookupsStarted.await(1, TimeUnit.SECONDS) ? 10.0 : -1.0;
+        });
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, "Vilnius", 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, "Riga", 1));
+        passengerList.add(new Passenger(PassengerType.ADULT, "Vilnius", 1));
+
+        try {
+            assertEquals(BigDecimal.valueOf(44.77), priceService.getDraftPrice(passengerList).getTotalPrice());
+            Mockito.verify(externalWebApiService, Mockito.times(2))
+                    .getBasePrice(Mockito.anyString(), Mockito.anyLong());
+        } finally {
+            upstreamExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Upstream lookups exceeding the request deadline must throw ExternalServiceUnavailableException")
+    void testRequestDeadline() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        ExecutorService upstreamExecutor = Executors.newFixedThreadPool(2);
+        ticketService =
+                TicketServices.createTicketService(externalWebApiService, upstreamExecutor, Duration.ofMillis(100));
+        priceService = new PriceService(ticketService, new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(meterRegistry, DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                upstreamExecutor, Duration.ofMillis(100), meterRegistry);
+
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return 10.0;
+        });
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        try {
+            Exception exception = assertThrows(
+                    ExternalServiceUnavailableException.class,
+                    () -> priceService.getDraftPrice(passengerList));
+
+            assertEquals("Timed out waiting for a response from an external service.", exception.getMessage());
+        } finally {
+            upstreamExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("An asynchronous draft price must complete once the upstream lookups have, without blocking the caller")
+    void testDraftPriceAsync() throws Exception {
+        ExecutorService upstreamExecutor = Executors.newFixedThreadPool(2);
+        priceService = new PriceService(ticketService, new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(meterRegistry, DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                upstreamExecutor, Duration.ofSeconds(5), meterRegistry);
+
+        CountDownLatch taxesReleased = new CountDownLatch(1);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenAnswer(invocation -> {
+            taxesReleased.await(1, TimeUnit.SECONDS);
+            return new Double[]{21.0};
+        });
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+
+        try {
+            CompletableFuture<DraftPrice> draftPrice = priceService.getDraftPriceAsync(passengerList);
+            assertFalse(draftPrice.isDone());
+
+            taxesReleased.countDown();
+            assertEquals(BigDecimal.valueOf(29.04), draftPrice.get(1, TimeUnit.SECONDS).getTotalPrice());
+        } finally {
+            upstreamExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A batch must look up taxes and each destination once and report failures per draft ticket")
+    void testDraftPriceBatch() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("MiddleOfNowhere"), Mockito.anyLong()))
+                .thenReturn(-1.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        List<List<Passenger>> passengerLists = Arrays.asList(
+                Arrays.asList(new Passenger(PassengerType.ADULT, destination, 2),
+                        new Passenger(PassengerType.CHILD, destination, 1)),
+                Collections.singletonList(new Passenger(PassengerType.ADULT, destination, -1)),
+                Arrays.asList(new Passenger(PassengerType.ADULT, destination, 1),
+                        new Passenger(PassengerType.ADULT, "MiddleOfNowhere", 1)),
+                Collections.singletonList(new Passenger(PassengerType.CHILD, destination, 1)));
+
+        List<DraftPriceResult> results = priceService.getDraftPrices(passengerLists);
+
+        assertEquals(4, results.size());
+        assertEquals(BigDecimal.valueOf(29.04), results.get(0).getDraftPrice().getTotalPrice());
+        assertTrue(results.get(1).getFailure() instanceof InvalidUserInputException);
+        assertEquals("Number of luggage items cannot be negative.", results.get(1).getFailure().getMessage());
+        assertTrue(results.get(2).getFailure() instanceof DataUnavailableException);
+        assertEquals("Destination 'MiddleOfNowhere' is not available.", results.get(2).getFailure().getMessage());
+        assertEquals(BigDecimal.valueOf(9.68), results.get(3).getDraftPrice().getTotalPrice());
+
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrice(Mockito.eq(destination), Mockito.anyLong());
+        Mockito.verify(externalWebApiService, Mockito.times(1)).getApplicableTaxes();
+    }
+
+    @Test
+    @DisplayName("Pricing a draft ticket must record the time of each stage and the number of passengers")
+    void testDraftPriceMetrics() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+        priceService.getDraftPrice(passengerList);
+
+        for (String stage: Arrays.asList("validation", "upstream", "pricing")) {
+            assertEquals(1L, meterRegistry.get(PriceService.STAGE_TIMER).tag("stage", stage).timer().count());
+        }
+
+        assertEquals(1L, meterRegistry.get("draftprice.passengers").summary().count());
+        assertEquals(2.0, meterRegistry.get("draftprice.passengers").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("A repeated cart in any order must be answered from the memo with tickets in the order of the request")
+    void testMemoisedDraftPrice() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+        DraftPrice draftPrice = priceService.getDraftPrice(passengerList);
+
+        Collections.reverse(passengerList);
+        DraftPrice memoisedDraftPrice = priceService.getDraftPrice(passengerList);
+
+        assertEquals(draftPrice.getTotalPrice(), memoisedDraftPrice.getTotalPrice());
+        assertEquals(draftPrice.getTickets().subList(2, 4), memoisedDraftPrice.getTickets().subList(0, 2));
+        assertEquals(draftPrice.getTickets().subList(0, 2), memoisedDraftPrice.getTickets().subList(2, 4));
+        assertEquals(1.0, meterRegistry.get("draftprice.memo.requests").tag("result", "hit").functionCounter().count());
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrice(Mockito.eq(destination), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Aggregated ticket lines must sum identical tickets and give the same total price as single tickets")
+    void testAggregatedDraftPrice() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("Riga"), Mockito.anyLong())).thenReturn(20.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+        passengerList.add(new Passenger(PassengerType.ADULT, "Riga", 1));
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+
+        AggregatedDraftPrice aggregatedDraftPrice = priceService.getAggregatedDraftPrice(passengerList);
+
+        assertEquals(Arrays.asList(
+                new TicketLine(TicketType.ADULT, destination, 2, new BigDecimal("12.10"), new BigDecimal("24.20")),
+                new TicketLine(TicketType.LUGGAGE, destination, 5, new BigDecimal("3.63"), new BigDecimal("18.15")),
+                new TicketLine(TicketType.CHILD, destination, 1, new BigDecimal("6.05"), new BigDecimal("6.05")),
+                new TicketLine(TicketType.ADULT, "Riga", 1, new BigDecimal("24.20"), new BigDecimal("24.20")),
+                new TicketLine(TicketType.LUGGAGE, "Riga", 1, new BigDecimal("7.26"), new BigDecimal("7.26"))),
+                aggregatedDraftPrice.getTickets());
+        assertEquals(priceService.getDraftPrice(passengerList).getTotalPrice(), aggregatedDraftPrice.getTotalPrice());
+        assertFalse(aggregatedDraftPrice.isStale());
+    }
+
+    @Test
+    @DisplayName("Aggregated ticket lines must leave out the luggage of passengers without luggage")
+    void testAggregatedDraftPriceWithoutLuggage() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 0));
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 0));
+
+        AggregatedDraftPrice aggregatedDraftPrice = priceService.getAggregatedDraftPrice(passengerList);
+
+        assertEquals(Collections.singletonList(
+                new TicketLine(TicketType.ADULT, destination, 2, new BigDecimal("12.10"), new BigDecimal("24.20"))),
+                aggregatedDraftPrice.getTickets());
+        assertEquals(new BigDecimal("24.20"), aggregatedDraftPrice.getTotalPrice());
+    }
+
+    @Test
+    @DisplayName("A rejected base price lookup must fall back to the last known base price and flag the price as stale")
+    void testStaleBasePriceFallback() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        AtomicLong nanos = new AtomicLong();
+        BasePriceCache basePriceCache = new BasePriceCache(externalWebApiService, 100,
+                Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofSeconds(30), nanos::get, Runnable::run);
+        ticketService = TicketServices.createTicketService(externalWebApiService, basePriceCache, Runnable::run,
+                Duration.ofSeconds(5));
+        priceService = new PriceService(ticketService, new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                new DraftPriceMemo(meterRegistry, DataSize.ofMegabytes(32), 100), new PriceTable(10_000),
+                Runnable::run, Duration.ofSeconds(5), meterRegistry);
+
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenReturn(10.0)
+                .thenThrow(new UpstreamRejectedException("Circuit breaker for the basePrice service is open."));
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+
+        DraftPrice draftPrice = priceService.getDraftPrice(passengerList);
+        assertEquals(BigDecimal.valueOf(29.04), draftPrice.getTotalPrice());
+        assertFalse(draftPrice.isStale());
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        draftPrice = priceService.getDraftPrice(passengerList);
+        assertEquals(BigDecimal.valueOf(29.04), draftPrice.getTotalPrice());
+        assertTrue(draftPrice.isStale());
+    }
+
+    @Test
+    @DisplayName("A rejected base price lookup without a last known base price must throw ExternalServiceUnavailableException")
+    void testRejectedWithoutFallback() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenThrow(new UpstreamRejectedException("Circuit breaker for the basePrice service is open."));
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        Exception exception = assertThrows(
+                ExternalServiceUnavailableException.class,
+                () -> priceService.getDraftPrice(passengerList));
+
+        assertEquals("Circuit breaker for the basePrice service is open.", exception.getMessage());
+    }
 }
@@ -0,0 +1,73 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.TicketType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks that the price table gives exactly the prices of {@link PriceService#getTotalPriceOfTicket}.
+ */
+class PriceTableTest {
+    PriceTable priceTable = new PriceTable(100);
+
+    @Test
+    @DisplayName("Prices of the table must match getTotalPriceOfTicket for random destinations, tickets and taxes")
+    void testConsistencyWithTotalPriceOfTicket() throws InvalidUserInputException {
+        Random random = new Random(20210701L);
+
+        for (int i = 0; i < 20_000; i++) {
+            String destination = "Destination-" + random.nextInt(50);
+            double basePrice = random.nextBoolean() ? random.nextInt(100_000) / 100.0 : random.nextDouble() * 1000.0;
+            List<Double> applicableTaxes = new ArrayList<>();
+
+            for (int rates = random.nextInt(4); rates > 0; rates--) {
+                applicableTaxes.add(random.nextInt(3000) / 100.0);
+            }
+
+            PriceTable.Row prices = priceTable.get(destination, basePrice, TaxRateSnapshot.of(applicableTaxes));
+
+            for (TicketType ticketType: TicketType.values()) {
+                int count = TicketType.LUGGAGE == ticketType
+                        ? 1 + random.nextInt(2 * PriceTable.TABULATED_ITEMS_OF_LUGGAGE)
+                        : 1;
+
+                assertEquals(PriceService.getTotalPriceOfTicket(PricingKernel.getNetPrice(ticketType, basePrice, count),
+                                applicableTaxes),
+                        BigDecimal.valueOf(prices.getPriceInMinorUnits(ticketType, count), 2),
+                        () -> String.format("%d %s tickets with base price %s and taxes %s",
+                                count, ticketType, basePrice, applicableTaxes));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A row must be reused until the base price of its destination or the tax snapshot changes")
+    void testRecomputedOnInputChange() throws InvalidUserInputException {
+        TaxRateSnapshot applicableTaxes = TaxRateSnapshot.of(Arrays.asList(5.0, 21.0));
+        PriceTable.Row prices = priceTable.get("Vilnius", 10.0, applicableTaxes);
+
+        assertSame(prices, priceTable.get("Vilnius", 10.0, applicableTaxes));
+        assertEquals(1260L, prices.getPriceInMinorUnits(TicketType.ADULT, 1));
+
+        PriceTable.Row changedBasePrice = priceTable.get("Vilnius", 20.0, applicableTaxes);
+        assertNotSame(prices, changedBasePrice);
+        assertEquals(2520L, changedBasePrice.getPriceInMinorUnits(TicketType.ADULT, 1));
+
+        TaxRateSnapshot refreshedTaxes = TaxRateSnapshot.of(Arrays.asList(21.0));
+        PriceTable.Row changedTaxes = priceTable.get("Vilnius", 20.0, refreshedTaxes);
+        assertNotSame(changedBasePrice, changedTaxes);
+        assertEquals(2420L, changedTaxes.getPriceInMinorUnits(TicketType.ADULT, 1));
+        assertSame(changedTaxes, priceTable.get("Vilnius", 20.0, refreshedTaxes));
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.model.Ticket;
+import com.github.janissl.draftticket.model.TicketType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the primitive pricing kernel gives exactly the results of the original boxed implementation.
+ */
+class PricingKernelTest {
+    private static final double[] COMMON_TAX_RATES = {5.0, 9.0, 12.0, 12.5, 21.0, 25.0};
+
+    /**
+     * The original implementation of PriceService.getTicketNetPrice, kept as the reference for parity checks.
+     */
+    private static Double referenceNetPrice(Ticket ticket) {
+        Double percentageDiscountChild = 50.0;
+        Double percentageLuggage = 30.0;
+
+        switch (ticket.getTicketType()) {
+            case ADULT:
+                return ticket.getBasePrice();
+            case CHILD:
+                return ticket.getBasePrice() * percentageDiscountChild / 100.0;
+            default:
+                return ticket.getCount() * ticket.getBasePrice() * percentageLuggage / 100.0;
+        }
+    }
+
+    /**
+     * The original implementation of PriceService.getTotalPriceOfTicket, kept as the reference for parity checks.
+     */
+    private static BigDecimal referenceTotalPrice(Double netPrice, List<Double> applicableTaxes) {
+        List<Double> taxAmounts = new ArrayList<>();
+
+        for (Double rate: applicableTaxes) {
+            taxAmounts.add(netPrice * rate / 100.0);
+        }
+
+        double totalPrice = netPrice + taxAmounts.stream().reduce(0.0, Double::sum);
+        return BigDecimal.valueOf(totalPrice).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal referenceRounding(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static List<Double> randomTaxRates(Random random) {
+        List<Double> applicableTaxes = new ArrayList<>();
+        int numberOfRates = random.nextInt(4);
+
+        for (int i = 0; i < numberOfRates; i++) {
+            applicableTaxes.add(random.nextBoolean()
+                    ? COMMON_TAX_RATES[random.nextInt(COMMON_TAX_RATES.length)]
+                    : random.nextInt(3000) / 100.0);
+        }
+
+        return applicableTaxes;
+    }
+
+    @Test
+    @DisplayName("Rounding to minor units must match BigDecimal HALF_UP rounding for every tenth of a cent")
+    void testRoundingOfThousandths() {
+        for (int thousandths = 0; thousandths <= 2_000_000; thousandths++) {
+            double amount = thousandths / 1000.0;
+            assertEquals(referenceRounding(amount), BigDecimal.valueOf(PricingKernel.roundToMinorUnits(amount), 2),
+                    () -> "Amount " + amount);
+        }
+    }
+
+    @Test
+    @DisplayName("Rounding to minor units must match BigDecimal HALF_UP rounding for known half cent edge cases")
+    void testRoundingOfHalfCentEdgeCases() {
+        double[] amounts = {0.005, 0.015, 0.125, 0.285, 1.005, 1.115, 2.675, 8.345, 1234.565, 9999999.995,
+                10000000.005, 123456789.125, 0.1 + 0.2, 1.0 / 3.0, 12.1 * 1.21, Math.nextUp(1.005), Math.nextDown(1.005)};
+
+        for (double amount: amounts) {
+            assertEquals(referenceRounding(amount), BigDecimal.valueOf(PricingKernel.roundToMinorUnits(amount), 2),
+                    () -> "Amount " + amount);
+        }
+    }
+
+    @Test
+    @DisplayName("Ticket prices of the kernel must match the original implementation for random tickets and taxes")
+    void testTicketPriceParity() throws InvalidUserInputException {
+        Random random = new Random(20210701L);
+
+        for (int i = 0; i < 200_000; i++) {
+            double basePrice = random.nextBoolean() ? random.nextInt(100_000) / 100.0 : random.nextDouble() * 1000.0;
+            TicketType ticketType = TicketType.values()[random.nextInt(TicketType.values().length)];
+            int count = TicketType.LUGGAGE == ticketType ? 1 + random.nextInt(10) : 1;
+            List<Double> applicableTaxes = randomTaxRates(random);
+
+            Ticket ticket = new Ticket(ticketType, basePrice, count);
+            Double referenceNetPrice = referenceNetPrice(ticket);
+            double netPrice = PricingKernel.getNetPrice(ticketType, basePrice, count);
+
+            assertEquals(referenceNetPrice, netPrice);
+            assertEquals(referenceTotalPrice(referenceNetPrice, applicableTaxes),
+                    BigDecimal.valueOf(PricingKernel.getTotalPriceInMinorUnits(netPrice, TaxRateSnapshot.of(applicableTaxes)), 2),
+                    () -> String.format("%s ticket with base price %s and taxes %s", ticketType, basePrice, applicableTaxes));
+            assertEquals(referenceTotalPrice(referenceNetPrice, applicableTaxes),
+                    PriceService.getTotalPriceOfTicket(netPrice, applicableTaxes));
+        }
+    }
+
+    @Test
+    @DisplayName("The total price of priced tickets must match the sum of their individual prices")
+    void testDraftTicketTotalParity() throws InvalidUserInputException {
+        List<Double> applicableTaxes = Arrays.asList(5.0, 21.0);
+        List<Ticket> tickets = Arrays.asList(
+                new Ticket(TicketType.ADULT, 10.05),
+                new Ticket(TicketType.LUGGAGE, 10.05, 3),
+                new Ticket(TicketType.CHILD, 33.33),
+                new Ticket(TicketType.LUGGAGE, 33.33, 1));
+
+        long totalPriceInMinorUnits = PricingKernel.priceTickets(tickets, TaxRateSnapshot.of(applicableTaxes));
+
+        for (Ticket ticket: tickets) {
+            assertEquals(referenceTotalPrice(referenceNetPrice(ticket), applicableTaxes), ticket.getPrice());
+        }
+
+        assertEquals(PriceService.getTotalPriceOfDraftTicket(tickets), BigDecimal.valueOf(totalPriceInMinorUnits, 2));
+    }
+}
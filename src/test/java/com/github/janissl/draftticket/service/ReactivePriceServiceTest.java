@@ -0,0 +1,196 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.conf.ReactiveExternalWebApiService;
+import com.github.janissl.draftticket.exception.DataUnavailableException;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import com.github.janissl.draftticket.model.DraftPrice;
+import com.github.janissl.draftticket.model.Passenger;
+import com.github.janissl.draftticket.model.PassengerType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactivePriceServiceTest {
+
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    @Mock
+    ReactiveExternalWebApiService reactiveExternalWebApiService;
+
+    AtomicLong nanos = new AtomicLong();
+    BasePriceCache basePriceCache;
+    TaxRateProvider taxRateProvider;
+    ReactivePriceService reactivePriceService;
+
+    String destination;
+    List<Passenger> passengerList = new ArrayList<>();
+
+    @BeforeEach
+    void resetPassengerList() {
+        basePriceCache = new BasePriceCache(externalWebApiService, 100,
+                Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofSeconds(30), nanos::get, Runnable::run);
+        taxRateProvider = new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15));
+        reactivePriceService = createReactivePriceService(Runnable::run, Duration.ofSeconds(5));
+        destination = "Vilnius";
+        passengerList.clear();
+    }
+
+    private ReactivePriceService createReactivePriceService(Executor upstreamExecutor, Duration requestTimeout) {
+        TicketService ticketService = TicketServices.createTicketService(externalWebApiService, basePriceCache,
+                upstreamExecutor, requestTimeout);
+
+        return new ReactivePriceService(ticketService, basePriceCache, taxRateProvider, new PriceTable(100),
+                reactiveExternalWebApiService, requestTimeout);
+    }
+
+    /**
+     * Waits for the draft price and rethrows a failure as the exception the pipeline has failed with.
+     */
+    private DraftPrice getDraftPrice() throws Exception {
+        try {
+            return reactivePriceService.getDraftPrice(passengerList).block();
+        } catch (RuntimeException e) {
+            throw (Exception) Exceptions.unwrap(e);
+        }
+    }
+
+    @Test
+    @DisplayName("A draft ticket must be priced from the non-blocking taxes and the shared base price lookups")
+    void testDraftPrice() throws Exception {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 1));
+
+        DraftPrice draftPrice = getDraftPrice();
+
+        assertEquals(BigDecimal.valueOf(29.04), draftPrice.getTotalPrice());
+        assertEquals(4, draftPrice.getTickets().size());
+        assertFalse(draftPrice.isStale());
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrice(Mockito.eq(destination), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Cached base prices and taxes must be used without calling the external services again")
+    void testCachedData() throws Exception {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        getDraftPrice();
+        getDraftPrice();
+
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrice(Mockito.eq(destination), Mockito.anyLong());
+        Mockito.verify(reactiveExternalWebApiService, Mockito.times(1)).getApplicableTaxes();
+    }
+
+    @Test
+    @DisplayName("Concurrent misses of the same destination must be coalesced into a single base price call")
+    void testCoalescedMisses() throws Exception {
+        List<Runnable> pendingCalls = new ArrayList<>();
+        reactivePriceService = createReactivePriceService(pendingCalls::add, Duration.ofSeconds(5));
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(10.0);
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        CompletableFuture<DraftPrice> first = reactivePriceService.getDraftPrice(passengerList).toFuture();
+        CompletableFuture<DraftPrice> second = reactivePriceService.getDraftPrice(passengerList).toFuture();
+        pendingCalls.forEach(Runnable::run);
+
+        assertEquals(1, pendingCalls.size());
+        assertEquals(first.get(1, TimeUnit.SECONDS).getTotalPrice(), second.get(1, TimeUnit.SECONDS).getTotalPrice());
+        Mockito.verify(externalWebApiService, Mockito.times(1))
+                .getBasePrice(Mockito.eq(destination), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Invalid passenger data must fail without calling the external services")
+    void testInvalidPassengerData() throws Exception {
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, -1));
+
+        Exception exception = assertThrows(
+                InvalidUserInputException.class,
+                this::getDraftPrice);
+
+        assertEquals("Number of luggage items cannot be negative.", exception.getMessage());
+        Mockito.verifyNoInteractions(reactiveExternalWebApiService, externalWebApiService);
+    }
+
+    @Test
+    @DisplayName("A negative base price must fail with DataUnavailableException")
+    void testUnavailableDestination() throws Exception {
+        destination = "MiddleOfNowhere";
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong())).thenReturn(-1.0);
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        Exception exception = assertThrows(
+                DataUnavailableException.class,
+                this::getDraftPrice);
+
+        assertEquals("Destination 'MiddleOfNowhere' is not available.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("A rejected base price lookup must fall back to the last known base price and flag the price as stale")
+    void testStaleBasePriceFallback() throws Exception {
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenReturn(10.0)
+                .thenThrow(new UpstreamRejectedException("Circuit breaker for the basePrice service is open."));
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        DraftPrice draftPrice = getDraftPrice();
+        assertFalse(draftPrice.isStale());
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        draftPrice = getDraftPrice();
+
+        assertEquals(BigDecimal.valueOf(15.73), draftPrice.getTotalPrice());
+        assertTrue(draftPrice.isStale());
+    }
+
+    @Test
+    @DisplayName("Upstream lookups exceeding the request deadline must fail with ExternalServiceUnavailableException")
+    void testRequestDeadline() throws Exception {
+        reactivePriceService = createReactivePriceService(command -> {}, Duration.ofMillis(100));
+        Mockito.when(reactiveExternalWebApiService.getApplicableTaxes()).thenReturn(Mono.just(new Double[]{21.0}));
+
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+
+        Exception exception = assertThrows(
+                ExternalServiceUnavailableException.class,
+                this::getDraftPrice);
+
+        assertEquals("Timed out waiting for a response from an external service.", exception.getMessage());
+    }
+}
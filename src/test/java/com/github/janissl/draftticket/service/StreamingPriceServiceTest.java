@@ -0,0 +1,145 @@
+package com.github.janissl.draftticket.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidPassengerDataException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.ValidationError;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingPriceServiceTest {
+    private static final String ADULT = "{\"passengerType\": \"ADULT\", \"destination\": \"Vilnius\", \"itemsOfLuggage\": 2}";
+    private static final String CHILD = "{\"passengerType\": \"CHILD\", \"destination\": \"Vilnius\", \"itemsOfLuggage\": 1}";
+    private static final List<String> EXPECTED_LINES = Arrays.asList(
+            "{\"ticketType\":\"ADULT\",\"count\":1,\"price\":12.10}",
+            "{\"ticketType\":\"LUGGAGE\",\"count\":2,\"price\":7.26}",
+            "{\"ticketType\":\"CHILD\",\"count\":1,\"price\":6.05}",
+            "{\"ticketType\":\"LUGGAGE\",\"count\":1,\"price\":3.63}",
+            "{\"totalPrice\":29.04}");
+
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    StringWriter output = new StringWriter();
+    StreamingPriceService streamingPriceService;
+
+    @BeforeEach
+    void resetService() {
+        streamingPriceService = createStreamingPriceService(256);
+    }
+
+    private StreamingPriceService createStreamingPriceService(int chunkSize) {
+        TicketService ticketService =
+                TicketServices.createTicketService(externalWebApiService, Runnable::run, Duration.ofSeconds(5));
+        return new StreamingPriceService(ticketService,
+                new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15)),
+                Runnable::run, Duration.ofSeconds(5), chunkSize);
+    }
+
+    private List<String> stream(String passengers)
+            throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(passengers);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            streamingPriceService.streamDraftPrice(parser, generator);
+        }
+
+        return Arrays.asList(output.toString().split("\n"));
+    }
+
+    private void mockUpstream() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq("Vilnius"), Mockito.anyLong())).thenReturn(10.0);
+    }
+
+    @Test
+    @DisplayName("Passengers sent as a JSON array must be streamed back as ticket lines and a total price")
+    void testJsonArray() throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        mockUpstream();
+
+        assertEquals(EXPECTED_LINES, stream("[" + ADULT + ", " + CHILD + "]"));
+    }
+
+    @Test
+    @DisplayName("Passengers sent as newline-delimited JSON must be streamed back as ticket lines and a total price")
+    void testNewlineDelimitedJson() throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        mockUpstream();
+
+        assertEquals(EXPECTED_LINES, stream(ADULT + "\n" + CHILD + "\n"));
+        assertTrue(output.toString().endsWith("\n"));
+    }
+
+    @Test
+    @DisplayName("Passengers must be priced in chunks with the same result")
+    void testChunks() throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        mockUpstream();
+        streamingPriceService = createStreamingPriceService(1);
+
+        assertEquals(EXPECTED_LINES, stream(ADULT + "\n" + CHILD));
+    }
+
+    @Test
+    @DisplayName("No passengers must be streamed back as a zero total price")
+    void testNoPassengers() throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        assertEquals(Arrays.asList("{\"totalPrice\":0}"), stream("[]"));
+    }
+
+    @Test
+    @DisplayName("An invalid passenger must fail the stream after the tickets of the previous chunks")
+    void testInvalidPassenger() throws ExternalServiceUnavailableException, InvalidUserInputException, IOException {
+        mockUpstream();
+        streamingPriceService = createStreamingPriceService(1);
+
+        Exception exception = assertThrows(
+                InvalidUserInputException.class,
+                () -> stream(ADULT + "\n{\"passengerType\": \"CHILD\", \"destination\": \"Vilnius\"}"));
+
+        assertEquals("No number of luggage items received from the client.", exception.getMessage());
+        assertEquals(EXPECTED_LINES.subList(0, 2), Arrays.asList(output.toString().split("\n")));
+    }
+
+    @Test
+    @DisplayName("An invalid passenger after the first chunk must be reported with its index in the whole stream")
+    void testInvalidPassengerIndex() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        mockUpstream();
+        streamingPriceService = createStreamingPriceService(2);
+
+        InvalidPassengerDataException exception = assertThrows(
+                InvalidPassengerDataException.class,
+                () -> stream(String.join("\n", ADULT, CHILD, ADULT, ADULT, CHILD,
+                        "{\"passengerType\": \"ADULT\", \"destination\": \"Vilnius\", \"itemsOfLuggage\": -1}")));
+
+        assertEquals(1, exception.getErrors().size());
+        assertEquals(5, exception.getErrors().get(0).getPassenger());
+        assertEquals(ValidationError.NEGATIVE_ITEMS_OF_LUGGAGE, exception.getErrors().get(0).getCode());
+    }
+
+    @Test
+    @DisplayName("Malformed passenger data must throw InvalidUserInputException")
+    void testMalformedInput() {
+        Exception exception = assertThrows(
+                InvalidUserInputException.class,
+                () -> stream("[" + ADULT + ", 42]"));
+
+        assertEquals("Passengers must be sent as JSON objects.", exception.getMessage());
+        assertThrows(InvalidUserInputException.class, () -> stream("{\"passengerType\": "));
+    }
+}
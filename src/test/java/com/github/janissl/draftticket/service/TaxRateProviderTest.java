@@ -0,0 +1,202 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.UpstreamRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class TaxRateProviderTest {
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    MutableClock clock;
+    TaxRateProvider taxRateProvider;
+
+    @BeforeEach
+    void resetProvider() {
+        clock = new MutableClock(Instant.parse("2021-07-01T10:00:00Z"));
+        taxRateProvider = new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15), clock);
+    }
+
+    @Test
+    @DisplayName("A tax rate snapshot must be reused until it gets refreshed")
+    void testSnapshotReused() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{5.0, 21.0});
+
+        assertEquals(Arrays.asList(5.0, 21.0), taxRateProvider.getSnapshot().toList());
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals(Arrays.asList(5.0, 21.0), taxRateProvider.getSnapshot().toList());
+
+        Mockito.verify(externalWebApiService, Mockito.times(1)).getApplicableTaxes();
+    }
+
+    @Test
+    @DisplayName("A scheduled refresh must replace the current snapshot")
+    void testScheduledRefresh() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0}, new Double[]{5.0, 21.0});
+
+        taxRateProvider.scheduledRefresh();
+        taxRateProvider.scheduledRefresh();
+
+        assertEquals(Arrays.asList(5.0, 21.0), taxRateProvider.getSnapshot().toList());
+    }
+
+    @Test
+    @DisplayName("A failed refresh must keep the last known good snapshot")
+    void testFallbackToLastKnownSnapshot() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0})
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get applicable taxes."));
+
+        taxRateProvider.scheduledRefresh();
+        clock.advance(Duration.ofMinutes(5));
+        taxRateProvider.scheduledRefresh();
+
+        assertEquals(Arrays.asList(21.0), taxRateProvider.getSnapshot().toList());
+    }
+
+    @Test
+    @DisplayName("A snapshot with a negative tax rate must be rejected and keep the last known good snapshot")
+    void testNegativeTaxRateRejected() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0}, new Double[]{5.0, -5.0});
+
+        taxRateProvider.scheduledRefresh();
+        taxRateProvider.scheduledRefresh();
+
+        assertEquals(Arrays.asList(21.0), taxRateProvider.getSnapshot().toList());
+    }
+
+    @Test
+    @DisplayName("A snapshot older than the maximum staleness must not be used when the taxes service fails")
+    void testMaxStalenessExceeded() throws ExternalServiceUnavailableException {
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0})
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get applicable taxes."));
+
+        taxRateProvider.scheduledRefresh();
+        clock.advance(Duration.ofMinutes(16));
+
+        Exception exception = assertThrows(
+                ExternalServiceUnavailableException.class,
+                () -> taxRateProvider.getSnapshot());
+
+        assertEquals("Failed to get applicable taxes.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("A snapshot older than the maximum staleness must be used while the taxes service is not being called")
+    void testStaleSnapshotWhileRejected() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0})
+                .thenThrow(new UpstreamRejectedException("Circuit breaker for the taxes service is open."));
+
+        taxRateProvider.scheduledRefresh();
+        clock.advance(Duration.ofMinutes(16));
+
+        TaxRateSnapshot snapshot = taxRateProvider.getSnapshot();
+
+        assertEquals(Arrays.asList(21.0), snapshot.toList());
+        assertTrue(taxRateProvider.isStale(snapshot));
+    }
+
+    @Test
+    @DisplayName("A refresh the saturated upstream executor rejects must fall back to the last known snapshot")
+    void testRefreshRejectedByExecutor() throws Exception {
+        Executor saturatedExecutor = command -> {
+            throw new RejectedExecutionException();
+        };
+
+        ExecutionException exception = assertThrows(
+                ExecutionException.class,
+                () -> taxRateProvider.getSnapshotAsync(saturatedExecutor).get(1, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof UpstreamRejectedException);
+
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{21.0});
+        taxRateProvider.scheduledRefresh();
+        clock.advance(Duration.ofMinutes(16));
+
+        TaxRateSnapshot snapshot = taxRateProvider.getSnapshotAsync(saturatedExecutor).get(1, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(21.0), snapshot.toList());
+        assertTrue(taxRateProvider.isStale(snapshot));
+    }
+
+    @Test
+    @DisplayName("Requests finding the snapshot stale at the same time must share a single refresh")
+    void testStaleRefreshCoalesced() throws Exception {
+        List<Runnable> pendingCalls = new ArrayList<>();
+        Mockito.when(externalWebApiService.getApplicableTaxes())
+                .thenReturn(new Double[]{21.0})
+                .thenThrow(new ExternalServiceUnavailableException("Failed to get applicable taxes."))
+                .thenReturn(new Double[]{5.0, 21.0});
+
+        taxRateProvider.scheduledRefresh();
+        clock.advance(Duration.ofMinutes(16));
+
+        CompletableFuture<TaxRateSnapshot> first = taxRateProvider.getSnapshotAsync(pendingCalls::add);
+        CompletableFuture<TaxRateSnapshot> second = taxRateProvider.getSnapshotAsync(pendingCalls::add);
+        pendingCalls.forEach(Runnable::run);
+
+        assertEquals(1, pendingCalls.size());
+        assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(5.0, 21.0), taxRateProvider.getSnapshot().toList());
+        Mockito.verify(externalWebApiService, Mockito.times(3)).getApplicableTaxes();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
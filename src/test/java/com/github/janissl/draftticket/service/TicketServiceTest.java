@@ -3,7 +3,9 @@ package com.github.janissl.draftticket.service;
 import com.github.janissl.draftticket.conf.ExternalWebApiService;
 import com.github.janissl.draftticket.exception.DataUnavailableException;
 import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidPassengerDataException;
 import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import com.github.janissl.draftticket.exception.ValidationError;
 import com.github.janissl.draftticket.model.Passenger;
 import com.github.janissl.draftticket.model.PassengerType;
 import com.github.janissl.draftticket.model.Ticket;
@@ -12,11 +14,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,7 +30,6 @@ class TicketServiceTest {
     @Mock
     ExternalWebApiService externalWebApiService;
 
-    @InjectMocks
     TicketService ticketService;
 
     List<Double> applicableTaxes;
@@ -38,6 +39,7 @@ class TicketServiceTest {
 
     @BeforeEach
     void resetInputData() {
+        ticketService = TicketServices.createTicketService(externalWebApiService, Runnable::run, Duration.ofSeconds(5));
         destination = "Vilnius";
         passengerList.clear();
         applicableTaxes = Collections.singletonList(21.0);
@@ -113,7 +115,8 @@ class TicketServiceTest {
         double basePrice = -1.0;
         passengerList.add(new Passenger(PassengerType.ADULT, destination, 2));
 
-        Mockito.when(externalWebApiService.getBasePrice(destination)).thenReturn(basePrice);
+        Mockito.when(externalWebApiService.getBasePrice(Mockito.eq(destination), Mockito.anyLong()))
+                .thenReturn(basePrice);
 
         Exception exception = assertThrows(
                 DataUnavailableException.class,
@@ -125,6 +128,17 @@ class TicketServiceTest {
         assertEquals(expectedMessage, actualMessage);
     }
 
+    @Test
+    @DisplayName("An unavailable destination must be reported without capturing a stack trace")
+    void testUnavailableDestinationStackless() {
+        DataUnavailableException exception = assertThrows(
+                DataUnavailableException.class,
+                () -> TicketService.checkBasePrice("MiddleOfNowhere", -1.0));
+
+        assertEquals(0, exception.getStackTrace().length);
+        assertEquals("Destination 'MiddleOfNowhere' is not available.", exception.getMessage());
+    }
+
     @Test
     @DisplayName("Negative number of luggage items must throw InvalidUserInputException")
     void testIncorrectLuggageItemNumber() {
@@ -141,6 +155,81 @@ class TicketServiceTest {
         assertEquals(expectedMessage, actualMessage);
     }
 
+    @Test
+    @DisplayName("Every error must be reported with the index of the invalid passenger and its error code")
+    void testValidationErrorCodes() {
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+        passengerList.add(new Passenger(null, destination, -1));
+        passengerList.add(new Passenger(PassengerType.CHILD, null, 2));
+
+        InvalidPassengerDataException exception = assertThrows(
+                InvalidPassengerDataException.class,
+                () -> TicketService.validatePassengerData(passengerList, 0, false));
+
+        List<InvalidPassengerDataException.PassengerError> errors = exception.getErrors();
+
+        assertEquals(3, errors.size());
+        assertEquals(1, errors.get(0).getPassenger());
+        assertEquals(ValidationError.MISSING_PASSENGER_TYPE, errors.get(0).getCode());
+        assertEquals(1, errors.get(1).getPassenger());
+        assertEquals(ValidationError.NEGATIVE_ITEMS_OF_LUGGAGE, errors.get(1).getCode());
+        assertEquals("itemsOfLuggage", errors.get(1).getField());
+        assertEquals(2, errors.get(2).getPassenger());
+        assertEquals(ValidationError.MISSING_DESTINATION, errors.get(2).getCode());
+        assertEquals("No passenger type received from the client. " +
+                "Number of luggage items cannot be negative. " +
+                "No destination received from the client.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("In the fail-fast mode only the first error must be reported")
+    void testFailFastValidation() {
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+        passengerList.add(new Passenger(null, null, -1));
+        passengerList.add(new Passenger(PassengerType.CHILD, null, 2));
+
+        InvalidPassengerDataException exception = assertThrows(
+                InvalidPassengerDataException.class,
+                () -> TicketService.validatePassengerData(passengerList, 0, true));
+
+        assertEquals(1, exception.getErrors().size());
+        assertEquals(1, exception.getErrors().get(0).getPassenger());
+        assertEquals(ValidationError.MISSING_PASSENGER_TYPE, exception.getErrors().get(0).getCode());
+        assertEquals("No passenger type received from the client.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("A passenger without luggage must be reported with its index unless the tickets are aggregated")
+    void testNoLuggageItems() throws InvalidPassengerDataException {
+        passengerList.add(new Passenger(PassengerType.ADULT, destination, 1));
+        passengerList.add(new Passenger(PassengerType.CHILD, destination, 0));
+
+        InvalidPassengerDataException exception = assertThrows(
+                InvalidPassengerDataException.class,
+                () -> TicketService.validatePassengerData(passengerList, 0, false, false));
+
+        assertEquals(1, exception.getErrors().size());
+        assertEquals(1, exception.getErrors().get(0).getPassenger());
+        assertEquals(ValidationError.NO_ITEMS_OF_LUGGAGE, exception.getErrors().get(0).getCode());
+
+        TicketService.validatePassengerData(passengerList, 0, false, true);
+    }
+
+    @Test
+    @DisplayName("Errors of more invalid passengers than fit in the initial arrays must all be reported")
+    void testManyInvalidPassengers() {
+        for (int i = 0; i < 40; i++) {
+            passengerList.add(new Passenger(PassengerType.ADULT, destination, i % 2 == 0 ? 1 : -1));
+        }
+
+        InvalidPassengerDataException exception = assertThrows(
+                InvalidPassengerDataException.class,
+                () -> TicketService.validatePassengerData(passengerList, 0, false));
+
+        assertEquals(20, exception.getErrors().size());
+        assertEquals(39, exception.getErrors().get(19).getPassenger());
+    }
+
     @Test
     @DisplayName("Tickets for all passengers must be generated correctly")
     void testGenerationOfTicketsForAllPassengers()
@@ -0,0 +1,31 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates ticket services for tests, with a base price cache and a batcher that fetches every destination right
+ * away, on the given upstream executor, from the given external Web API.
+ */
+final class TicketServices {
+    private TicketServices() {
+    }
+
+    static TicketService createTicketService(ExternalWebApiService externalWebApiService, Executor upstreamExecutor,
+                                             Duration requestTimeout) {
+        return createTicketService(externalWebApiService, new BasePriceCache(externalWebApiService,
+                new SimpleMeterRegistry(), 100, Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ofSeconds(30),
+                ForkJoinPool.commonPool()), upstreamExecutor, requestTimeout);
+    }
+
+    static TicketService createTicketService(ExternalWebApiService externalWebApiService, BasePriceCache basePriceCache,
+                                             Executor upstreamExecutor, Duration requestTimeout) {
+        return new TicketService(basePriceCache,
+                new BasePriceBatcher(externalWebApiService, upstreamExecutor, null, Duration.ZERO, 50),
+                requestTimeout);
+    }
+}
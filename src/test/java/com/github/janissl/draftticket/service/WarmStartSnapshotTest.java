@@ -0,0 +1,119 @@
+package com.github.janissl.draftticket.service;
+
+import com.github.janissl.draftticket.conf.ExternalWebApiService;
+import com.github.janissl.draftticket.exception.ExternalServiceUnavailableException;
+import com.github.janissl.draftticket.exception.InvalidUserInputException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(MockitoExtension.class)
+class WarmStartSnapshotTest {
+    private static final Instant SAVED_AT = Instant.parse("2021-07-01T10:00:00Z");
+
+    @Mock
+    ExternalWebApiService externalWebApiService;
+
+    @TempDir
+    Path directory;
+
+    Path path;
+    BasePriceCache basePriceCache;
+    TaxRateProvider taxRateProvider;
+
+    @BeforeEach
+    void saveSnapshot() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        Mockito.when(externalWebApiService.getBasePrice("Vilnius")).thenReturn(10.0);
+        Mockito.when(externalWebApiService.getBasePrice("R\u012bga")).thenReturn(20.0);
+        Mockito.when(externalWebApiService.getApplicableTaxes()).thenReturn(new Double[]{5.0, 21.0});
+
+        Clock clock = Clock.fixed(SAVED_AT, ZoneOffset.UTC);
+        basePriceCache = createBasePriceCache();
+        taxRateProvider = new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15), clock);
+        basePriceCache.get("Vilnius");
+        basePriceCache.get("R\u012bga");
+        taxRateProvider.refresh();
+
+        path = directory.resolve("snapshots").resolve("warm-start.snapshot");
+        new WarmStartSnapshot(basePriceCache, taxRateProvider, path, clock).save();
+        Mockito.clearInvocations(externalWebApiService);
+    }
+
+    @Test
+    @DisplayName("A restarted instance must get the saved base prices and taxes without calling the external services")
+    void testRestore() throws ExternalServiceUnavailableException, InvalidUserInputException {
+        restoreAfter(Duration.ofMinutes(2));
+
+        assertEquals(10.0, basePriceCache.get("Vilnius"));
+        assertEquals(20.0, basePriceCache.get("R\u012bga"));
+        assertEquals(Arrays.asList(5.0, 21.0), taxRateProvider.getLastKnownSnapshot().toList());
+        assertEquals(SAVED_AT, taxRateProvider.getLastKnownSnapshot().getFetchedAt());
+        assertFalse(taxRateProvider.isStale(taxRateProvider.getLastKnownSnapshot()));
+        Mockito.verifyNoInteractions(externalWebApiService);
+    }
+
+    @Test
+    @DisplayName("Base prices older than their time to live must only be restored as last known base prices")
+    void testRestoreExpired() {
+        restoreAfter(Duration.ofMinutes(11));
+
+        assertNull(basePriceCache.peek("Vilnius"));
+        assertEquals(10.0, basePriceCache.getLastKnown("Vilnius"));
+    }
+
+    @Test
+    @DisplayName("A corrupted snapshot must be ignored")
+    void testCorruptedSnapshot() throws IOException {
+        byte[] snapshot = Files.readAllBytes(path);
+        snapshot[snapshot.length - 1] ^= 1;
+        Files.write(path, snapshot);
+
+        restoreAfter(Duration.ofMinutes(2));
+
+        assertNull(basePriceCache.peek("Vilnius"));
+        assertNull(taxRateProvider.getLastKnownSnapshot());
+    }
+
+    @Test
+    @DisplayName("A snapshot of another version must be ignored")
+    void testUnsupportedVersion() throws IOException {
+        byte[] snapshot = Files.readAllBytes(path);
+        snapshot[7] = WarmStartSnapshot.VERSION + 1;
+        Files.write(path, snapshot);
+
+        restoreAfter(Duration.ofMinutes(2));
+
+        assertNull(basePriceCache.peek("Vilnius"));
+        assertNull(taxRateProvider.getLastKnownSnapshot());
+    }
+
+    private void restoreAfter(Duration age) {
+        Clock clock = Clock.fixed(SAVED_AT.plus(age), ZoneOffset.UTC);
+        basePriceCache = createBasePriceCache();
+        taxRateProvider = new TaxRateProvider(externalWebApiService, Duration.ofMinutes(15), clock);
+        new WarmStartSnapshot(basePriceCache, taxRateProvider, path, clock).restore();
+    }
+
+    private BasePriceCache createBasePriceCache() {
+        return new BasePriceCache(externalWebApiService, 100, Duration.ofMinutes(10), Duration.ofMinutes(5),
+                Duration.ofSeconds(30), System::nanoTime, Runnable::run);
+    }
+}